@@ -0,0 +1,22 @@
+package bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+//Runs the benchmarks with the allocation rate (gc.alloc.rate.norm, bytes per operation) and the
+//DAG depth reported next to each score. Takes the usual JMH arguments, e.g.
+//  bench.BenchmarkRunner QueryBenchmark -p segments=1000,100000 -rf json -rff queries.json
+//mvn package builds bench/target/benchmarks.jar with this as its main class:
+//  java -jar bench/target/benchmarks.jar QueryBenchmark -p segments=1000
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .addProfiler(DepthProfiler.class)
+                .build()).run();
+    }
+}
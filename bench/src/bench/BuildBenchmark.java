@@ -0,0 +1,55 @@
+package bench;
+
+import main.input.DCELByteReader;
+import main.input.TrapMapBuilder;
+import main.structures.DCEL.DCEL;
+import main.structures.TrapezoidMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+//Randomized construction of the map, one build per iteration with a new permutation each time
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "-Xss64m"})
+public class BuildBenchmark {
+
+    @Param({"100", "1000", "10000", "100000", "1000000"})
+    public int segments;
+
+    private DCEL dcel;
+    private long seed;
+    private TrapezoidMap built;
+
+    @Setup
+    public void setup() throws IOException {
+        dcel = DCELByteReader.read(GridFiles.grid(segments));
+    }
+
+    @TearDown(Level.Iteration)
+    public void measureDepth(){
+        DepthProfiler.depth = built.depth();
+    }
+
+    @Benchmark
+    public TrapezoidMap buildTrapMap(){
+        built = TrapMapBuilder.buildTrapMap(dcel, seed++);
+        return built;
+    }
+}
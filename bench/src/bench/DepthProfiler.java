@@ -0,0 +1,36 @@
+package bench;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+import java.util.Collection;
+import java.util.Collections;
+
+//Reports the longest search path of the map a benchmark last built as a secondary result,
+//next to the allocation rate of the GC profiler
+public class DepthProfiler implements InternalProfiler {
+
+    //Set by the benchmarks in the forked VM, -1 until a map is built
+    static volatile int depth = -1;
+
+    @Override
+    public String getDescription(){
+        return "Depth of the search DAG";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams){
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams,
+                                                       IterationResult result){
+        if(depth < 0) return Collections.emptyList();
+        return Collections.singletonList(new ScalarResult("dag.depth", depth, "nodes", AggregationPolicy.MAX));
+    }
+}
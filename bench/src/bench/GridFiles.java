@@ -0,0 +1,27 @@
+package bench;
+
+import main.input.DCELGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+//DCEL files of jittered grids of quadrilaterals from DCELGenerator. Files are written once to the
+//temporary directory and reused by later runs
+public class GridFiles {
+
+    private GridFiles(){
+    }
+
+    //A grid with about the given number of segments
+    public static Path grid(int segments) throws IOException {
+        Path file = Paths.get(System.getProperty("java.io.tmpdir"), "trapezoids-grid-" + segments + ".txt");
+        if(!Files.exists(file)){
+            Path tmp = Files.createTempFile(file.getParent(), "trapezoids-grid", ".tmp");
+            DCELGenerator.write(DCELGenerator.Scene.GRID, segments, 1, tmp);
+            Files.move(tmp, file);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,91 @@
+package bench;
+
+import main.Query;
+import main.input.DCELByteReader;
+import main.input.TrapMapBuilder;
+import main.structures.DCEL.DCEL;
+import main.structures.DCEL.Vertex;
+import main.structures.TrapezoidMap;
+import main.structures.search.QueryResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//Point location on a built map through SearchStructure.query, for uniformly random points in
+//the bounding box. The map is shared by all threads, each thread walks its own copy of the points
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "-Xss64m"})
+public class QueryBenchmark {
+
+    private static final int POINTS = 1 << 16;
+
+    @Param({"100", "1000", "10000", "100000", "1000000"})
+    public int segments;
+
+    TrapezoidMap map;
+    float[] xs = new float[POINTS];
+    float[] ys = new float[POINTS];
+
+    @Setup
+    public void setup() throws IOException {
+        DCEL dcel = DCELByteReader.read(GridFiles.grid(segments));
+        map = TrapMapBuilder.buildTrapMap(dcel, 1);
+        DepthProfiler.depth = map.depth();
+
+        float left = Float.MAX_VALUE, right = -Float.MAX_VALUE, bottom = Float.MAX_VALUE, top = -Float.MAX_VALUE;
+        for(Vertex v: dcel.vertices){
+            left = Math.min(left, v.x);
+            right = Math.max(right, v.x);
+            bottom = Math.min(bottom, v.y);
+            top = Math.max(top, v.y);
+        }
+        Random r = new Random(segments);
+        for(int i = 0; i < POINTS; i++){
+            xs[i] = left + r.nextFloat() * (right - left);
+            ys[i] = bottom + r.nextFloat() * (top - bottom);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        @Setup
+        public void setup(){
+            next = (int) Thread.currentThread().getId() * 7919;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Threads(1)
+    public QueryResponse latency(Cursor c){
+        int i = c.next++ & (POINTS - 1);
+        return map.query(new Query(xs[i], ys[i]));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Threads(Threads.MAX)
+    public QueryResponse throughput(Cursor c){
+        int i = c.next++ & (POINTS - 1);
+        return map.query(new Query(xs[i], ys[i]));
+    }
+}
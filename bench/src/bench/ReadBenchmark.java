@@ -0,0 +1,54 @@
+package bench;
+
+import main.input.DCELByteReader;
+import main.input.DCELReader;
+import main.structures.DCEL.DCEL;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+//Parsing a DCEL file into linked vertices, faces and half-edges
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class ReadBenchmark {
+
+    @Param({"100", "1000", "10000", "100000", "1000000"})
+    public int segments;
+
+    private Path file;
+
+    @Setup
+    public void setup() throws IOException {
+        file = GridFiles.grid(segments);
+    }
+
+    @Benchmark
+    public DCEL readDCEL() throws IOException {
+        try(Scanner scanner = new Scanner(file.toFile())){
+            return new DCELReader(scanner).readDCEL();
+        }
+    }
+
+    //The reader QueryRunner uses, for comparison
+    @Benchmark
+    public DCEL readBytes() throws IOException {
+        return DCELByteReader.read(file);
+    }
+}
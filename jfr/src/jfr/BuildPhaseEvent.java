@@ -0,0 +1,35 @@
+package jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import main.metrics.BuildRecorder;
+
+@Name("trapezoids.BuildPhase")
+@Label("Build Phase")
+@Category("Trapezoids")
+@Description("A phase of reading a DCEL file or building a trapezoidal map from it")
+@StackTrace(false)
+class BuildPhaseEvent extends Event implements BuildRecorder.Phase {
+
+    @Label("Phase")
+    @Description("read, segments, boundingBox or insertion")
+    String phase;
+
+    @Label("Items")
+    @Description("Half edges for read, segments for the other phases")
+    long items;
+
+    BuildPhaseEvent(String phase){
+        this.phase = phase;
+    }
+
+    @Override
+    public void end(long items){
+        this.items = items;
+        commit();
+    }
+}
@@ -0,0 +1,36 @@
+package jfr;
+
+import jdk.jfr.EventType;
+import main.metrics.BuildRecorder;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+//Emits the build phases and every SAMPLE-th segment insertion as Flight Recorder events in the
+//Trapezoids category. Found by BuildRecorder when this module is on the class path, then e.g.
+//  java -XX:StartFlightRecording=filename=build.jfr ...
+//  jfr print --events trapezoids.SegmentInsertion build.jfr
+//Set the sampling period with -Dtrapezoids.jfr.sample=<n>, 1 records every insertion
+public class JfrBuildRecorder implements BuildRecorder {
+
+    private static final int SAMPLE = Math.max(1, Integer.getInteger("trapezoids.jfr.sample", 64));
+    private static final EventType INSERTIONS = EventType.getEventType(SegmentInsertionEvent.class);
+    private static final Insertion SKIPPED = (crossed, handler, nodes, trapezoids) -> {};
+
+    private final AtomicLong insertions = new AtomicLong();
+
+    @Override
+    public Phase phase(String name){
+        BuildPhaseEvent event = new BuildPhaseEvent(name);
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public Insertion insertion(){
+        // Don't count while no recording wants the events, so a recording samples from its start
+        if(!INSERTIONS.isEnabled() || insertions.getAndIncrement() % SAMPLE != 0) return SKIPPED;
+        SegmentInsertionEvent event = new SegmentInsertionEvent();
+        event.begin();
+        return event;
+    }
+}
@@ -0,0 +1,39 @@
+package jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import main.metrics.BuildRecorder;
+
+@Name("trapezoids.SegmentInsertion")
+@Label("Segment Insertion")
+@Category("Trapezoids")
+@Description("The insertion of one segment into a trapezoidal map, sampled")
+@StackTrace(false)
+class SegmentInsertionEvent extends Event implements BuildRecorder.Insertion {
+
+    @Label("Crossed Trapezoids")
+    @Description("Trapezoids followSegment found along the segment")
+    int crossed;
+
+    @Label("Handler")
+    String handler;
+
+    @Label("Nodes Created")
+    int nodes;
+
+    @Label("Trapezoids Created")
+    int trapezoids;
+
+    @Override
+    public void end(int crossed, String handler, int nodes, int trapezoids){
+        this.crossed = crossed;
+        this.handler = handler;
+        this.nodes = nodes;
+        this.trapezoids = trapezoids;
+        commit();
+    }
+}
@@ -0,0 +1,73 @@
+package jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import main.input.DCELByteReader;
+import main.input.DCELGenerator;
+import main.input.TrapMapBuilder;
+import main.metrics.BuildRecorder;
+import main.structures.DCEL.DCEL;
+import main.structures.TrapezoidMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JfrBuildRecorderTest {
+
+    @TempDir
+    Path dir;
+
+    //The service file makes this the recorder, every phase is recorded once with its items, and
+    //every 64th insertion with what it crossed and created
+    @Test
+    public void recordsThePhasesAndSampledInsertionsOfABuild() throws IOException {
+        assertInstanceOf(JfrBuildRecorder.class, BuildRecorder.RECORDER);
+        Path file = dir.resolve("grid.txt");
+        DCELGenerator.write(DCELGenerator.Scene.GRID, 2000, 4, file);
+
+        Path events = dir.resolve("build.jfr");
+        DCEL dcel;
+        TrapezoidMap map;
+        try(Recording recording = new Recording()){
+            recording.enable(BuildPhaseEvent.class);
+            recording.enable(SegmentInsertionEvent.class);
+            recording.start();
+            dcel = DCELByteReader.read(file);
+            map = TrapMapBuilder.buildTrapMap(dcel, 4);
+            recording.stop();
+            recording.dump(events);
+        }
+
+        Map<String, Long> phases = new HashMap<>();
+        int insertions = 0;
+        for(RecordedEvent event: RecordingFile.readAllEvents(events)){
+            if(event.getEventType().getName().equals("trapezoids.BuildPhase")){
+                assertNull(phases.put(event.getString("phase"), event.getLong("items")), event.getString("phase"));
+            }
+            else if(event.getEventType().getName().equals("trapezoids.SegmentInsertion")){
+                insertions++;
+                int crossed = event.getInt("crossed");
+                int trapezoids = event.getInt("trapezoids");
+                assertEquals(crossed == 1 ? BuildRecorder.ONE : BuildRecorder.MANY, event.getString("handler"));
+                assertTrue(trapezoids >= 2, event.toString());
+                assertTrue(event.getInt("nodes") >= crossed + trapezoids, event.toString());
+            }
+        }
+        int inserted = map.segments.size() - 4; // The sides of the bounding box aren't inserted
+        assertEquals((long) dcel.halfEdges.size(), phases.get(BuildRecorder.READ));
+        assertEquals((long) inserted, phases.get(BuildRecorder.SEGMENTS));
+        assertEquals((long) inserted, phases.get(BuildRecorder.BOUNDING_BOX));
+        assertEquals((long) inserted, phases.get(BuildRecorder.INSERTION));
+        assertEquals((inserted + 63) / 64, insertions);
+    }
+}
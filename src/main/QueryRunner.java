@@ -1,15 +1,26 @@
 package main;
 
-import java.io.FileNotFoundException;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Scanner;
 import java.io.File;
 
-import main.input.DCELReader;
-import main.input.InputHelper;
+import main.input.DCELByteReader;
+import main.input.QueryReader;
 import main.input.TrapMapBuilder;
 import main.structures.DCEL.DCEL;
 import main.structures.Segment;
 import main.structures.TrapezoidMap;
+import main.structures.search.MappedSearchStructure;
 import main.structures.search.QueryResponse;
 
 import java.util.List;
@@ -26,9 +37,40 @@ public class QueryRunner {
     private int trialNo;
     private State state;
 
-    public static void main(String[] args){
-        QueryRunner qr = new QueryRunner();
-        qr.run();
+    private static final int BULK_BATCH = 1 << 16;
+    private static final String SNAPSHOT = "--snapshot";
+    private static final String WRITE_SNAPSHOT = "--write-snapshot";
+
+    //Without arguments queries are typed in one at a time. Bulk mode answers a stream of queries,
+    //one point per line, from a map built from a DCEL file or from a snapshot of one:
+    //  QueryRunner <dcel file> [<query file> [<output file>]]
+    //  QueryRunner --snapshot <snapshot file> [<query file> [<output file>]]
+    //reading standard input and writing standard output when a file is missing or -. A snapshot
+    //is only memory mapped, so answering starts at once whatever the size of the map. Write one with
+    //  QueryRunner --write-snapshot <dcel file> <snapshot file>
+    public static void main(String[] args) throws IOException {
+        if(args.length == 0){
+            QueryRunner qr = new QueryRunner();
+            qr.run();
+        }
+        else if(args[0].equals(WRITE_SNAPSHOT)){
+            if(args.length != 3){
+                System.out.println("Usage: QueryRunner " + WRITE_SNAPSHOT + " <dcel file> <snapshot file>");
+                return;
+            }
+            TrapezoidMap trapMap = TrapMapBuilder.buildTrapMap(DCELByteReader.read(Paths.get(args[1])), 0);
+            trapMap.writeSnapshot(Paths.get(args[2]));
+        }
+        else if(args[0].equals(SNAPSHOT)){
+            if(args.length < 2){
+                System.out.println("Usage: QueryRunner " + SNAPSHOT + " <snapshot file> [<query file> [<output file>]]");
+                return;
+            }
+            bulk(args[1], true, Arrays.copyOfRange(args, 2, args.length));
+        }
+        else{
+            bulk(args[0], false, Arrays.copyOfRange(args, 1, args.length));
+        }
     }
 
     public QueryRunner(){
@@ -39,7 +81,6 @@ public class QueryRunner {
     }
 
     private void run(){
-        Scanner fileScanner;
         File segmentsFile;
         TrapezoidMap trapMap = null;
 
@@ -55,13 +96,11 @@ public class QueryRunner {
 //                    segmentsFile = new File(input.next());
                     segmentsFile = new File("dcel.txt");
                     println();
-                    fileScanner = new Scanner(segmentsFile);
-                    DCELReader reader = new DCELReader(fileScanner);
-                    DCEL dcel = reader.readDCEL();
+                    DCEL dcel = DCELByteReader.read(segmentsFile.toPath());
 //                  dcel.print();
                     trapMap = TrapMapBuilder.buildTrapMap(dcel);
                     state = state.QUERYING;
-                }catch(FileNotFoundException e){
+                }catch(IOException e){
                     println("This file doesn't exist!");
                 }
             }
@@ -70,11 +109,11 @@ public class QueryRunner {
                     Scanner queryScanner = new Scanner(System.in);
                     String queryStr = queryScanner.nextLine();
                     println();
-                    queryStr = InputHelper.nonDigitsToBlanks(queryStr);
-                    Scanner stringScanner = new Scanner(queryStr);
-                    float x = stringScanner.nextFloat();
-                    float y = stringScanner.nextFloat();
-                    Query q = new Query(x, y);
+                    float[] point = QueryReader.point(queryStr);
+                    if(point == null){
+                        continue;
+                    }
+                    Query q = new Query(point[0], point[1]);
                     QueryResponse qr = trapMap.query(q);
                     if(qr == null){
                         println("OUTSIDE BOUNDING BOX");
@@ -89,6 +128,67 @@ public class QueryRunner {
 
     }
 
+    //Answers the queries of files[0] into files[1], from the map built from mapFile or mapped from
+    //it if it is a snapshot
+    private static void bulk(String mapFile, boolean snapshot, String[] files) throws IOException {
+        long start = System.nanoTime();
+        TrapezoidMap trapMap = null;
+        MappedSearchStructure mapped = null;
+        if(snapshot){
+            mapped = MappedSearchStructure.open(Paths.get(mapFile));
+        }
+        else{
+            trapMap = TrapMapBuilder.buildTrapMap(DCELByteReader.read(Paths.get(mapFile)), 0);
+            trapMap.freeze();
+        }
+        long built = System.nanoTime();
+
+        InputStream in = files.length > 0 && !files[0].equals("-") ? new FileInputStream(files[0]) : System.in;
+        OutputStream os = files.length > 1 && !files[1].equals("-") ? new FileOutputStream(files[1]) : System.out;
+        long count = 0;
+        try(Writer out = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), 1 << 20)){
+            QueryReader queries = new QueryReader(in);
+            float[] xs = new float[BULK_BATCH];
+            float[] ys = new float[BULK_BATCH];
+            QueryResponse[] responses = new QueryResponse[BULK_BATCH];
+            StringBuilder line = new StringBuilder();
+            int n;
+            while((n = queries.read(xs, ys)) > 0){
+                if(mapped != null){
+                    // One answer at a time, written straight from the mapped bytes
+                    for(int i = 0; i < n; i++){
+                        int answer = mapped.locate(xs[i], ys[i]);
+                        line.setLength(0);
+                        if(answer < 0) line.append("OUTSIDE BOUNDING BOX");
+                        else mapped.appendQueryString(answer, line);
+                        out.append(line).append('\n');
+                    }
+                }
+                else{
+                    if(n < BULK_BATCH){
+                        xs = Arrays.copyOf(xs, n);
+                        ys = Arrays.copyOf(ys, n);
+                    }
+                    trapMap.query(xs, ys, responses);
+                    for(int i = 0; i < n; i++){
+                        out.write(responses[i] == null ? "OUTSIDE BOUNDING BOX" : responses[i].queryString());
+                        out.write('\n');
+                    }
+                }
+                count += n;
+            }
+        }
+        finally{
+            if(in != System.in) in.close();
+        }
+        long done = System.nanoTime();
+
+        double seconds = (done - built) / 1e9;
+        if(snapshot) System.err.printf("Mapped the snapshot in %d ms%n", (built - start) / 1000000);
+        else System.err.printf("Built the map of %d segments in %d ms%n", trapMap.segments.size(), (built - start) / 1000000);
+        System.err.printf("Answered %d queries in %d ms, %.0f queries/s%n", count, (done - built) / 1000000, count / seconds);
+    }
+
     private void println(String s){
         System.out.println(s);
     }
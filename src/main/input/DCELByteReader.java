@@ -0,0 +1,550 @@
+package main.input;
+
+import main.metrics.BuildRecorder;
+import main.structures.DCEL.DCEL;
+import main.structures.DCEL.Face;
+import main.structures.DCEL.HalfEdge;
+import main.structures.DCEL.Vertex;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntToLongFunction;
+import java.util.stream.IntStream;
+
+//Reads the v/f/e DCEL format of DCELReader straight from the bytes of a memory mapped file.
+//Numbers are parsed in place without building a String per line or token, and references
+//between records are kept as packed int pairs that are resolved through LongIntMaps once the
+//whole file has been read, so apart from the DCEL objects themselves almost nothing is allocated.
+//Unlike DCELReader, negative coordinates keep their sign and a record may refer to vertices
+//and faces that appear after it in the file
+public class DCELByteReader {
+
+    private static final int WINDOW = 1 << 28; //Bytes of the file mapped at a time
+    private static final int CHUNK = 1 << 20; //Smallest chunk readParallel hands to a task
+    private static final long NIL = Long.MIN_VALUE; //Key of a "nil" or missing reference
+    private static final double[] POW10 = new double[23];
+    static {
+        POW10[0] = 1;
+        for(int i = 1; i < POW10.length; i++) POW10[i] = POW10[i - 1] * 10;
+    }
+
+    // The records read so far, in file order. Edge references are packed with LongIntMap.pair
+    List<Vertex> vertices = new ArrayList<>();
+    long[] incidentKeys = new long[16];
+
+    List<Face> faces = new ArrayList<>();
+    int[] faceNos = new int[16];
+    long[] outerKeys = new long[16];
+    int[] innerFrom = new int[16]; //Inner components of face i are innerKeys[innerFrom[i]..innerTo[i]), innerFrom is -1 for nil
+    int[] innerTo = new int[16];
+    long[] innerKeys = new long[16];
+    int innerCount;
+
+    int edgeCount;
+    long[] edgeKeys = new long[16];
+    int[] originNos = new int[16];
+    long[] twinKeys = new long[16];
+    int[] edgeFaceNos = new int[16];
+    long[] nextKeys = new long[16];
+    long[] prevKeys = new long[16];
+
+    List<String> malformed = new ArrayList<>();
+
+    // The line being parsed
+    private ByteBuffer buf;
+    private int pos;
+    private int lineEnd;
+    private int runStart;
+
+    public static DCEL read(Path file) throws IOException {
+        BuildRecorder.Phase phase = BuildRecorder.RECORDER.phase(BuildRecorder.READ);
+        DCELByteReader reader = new DCELByteReader();
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            long size = channel.size();
+            long offset = 0;
+            while(offset < size){
+                int length = (int) Math.min(WINDOW, size - offset);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                int parsed = offset + length == size ? length : afterLastLine(window, length);
+                reader.parse(window, 0, parsed);
+                offset += parsed;
+            }
+        }
+        DCEL dcel = reader.link(1);
+        phase.end(dcel.halfEdges.size());
+        return dcel;
+    }
+
+    //Same as read(file) but parses line aligned chunks of the file and links the records on all
+    //cores of the common fork/join pool. The DCEL is the one read(file) returns, and so it is
+    //identical to what DCELReader.readDCEL returns for the same file, with the vertices, faces and
+    //half edges in the same order and linked the same way, for every file DCELReader reads
+    //correctly. DCELReader drops the minus sign of negative numbers and can't resolve a reference
+    //to a vertex or face further down the file; readParallel, like read, reads those as written
+    public static DCEL readParallel(Path file) throws IOException {
+        BuildRecorder.Phase phase = BuildRecorder.RECORDER.phase(BuildRecorder.READ);
+        int parts = Math.max(1, ForkJoinPool.getCommonPoolParallelism());
+        List<ByteBuffer> chunks = new ArrayList<>();
+        List<int[]> bounds = new ArrayList<>();
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            long size = channel.size();
+            long offset = 0;
+            while(offset < size){
+                int length = (int) Math.min(WINDOW, size - offset);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                int parsed = offset + length == size ? length : afterLastLine(window, length);
+                // A few chunks per core so an uneven chunk doesn't hold the others up
+                split(window, 0, parsed, Math.max(1, Math.min(parts * 4, parsed / CHUNK)), chunks, bounds);
+                offset += parsed;
+            }
+        }
+        DCEL dcel = read(chunks, bounds, parts);
+        phase.end(dcel.halfEdges.size());
+        return dcel;
+    }
+
+    //readParallel of the bytes between the buffer's position and limit, split into count chunks
+    //and linked with parts partitions whatever the number of cores
+    static DCEL readParallel(ByteBuffer bytes, int count, int parts){
+        List<ByteBuffer> chunks = new ArrayList<>();
+        List<int[]> bounds = new ArrayList<>();
+        split(bytes, bytes.position(), bytes.limit(), count, chunks, bounds);
+        return read(chunks, bounds, parts);
+    }
+
+    //Adds up to count line aligned chunks of bytes[from..to) to chunks and their bounds to bounds
+    private static void split(ByteBuffer bytes, int from, int to, int count, List<ByteBuffer> chunks, List<int[]> bounds){
+        int start = from;
+        for(int c = 1; c <= count; c++){
+            int end = c == count ? to : Math.max(start, lineStartAfter(bytes, from + (int) ((long) (to - from) * c / count), to));
+            if(end > start){
+                chunks.add(bytes);
+                bounds.add(new int[]{start, end});
+            }
+            start = end;
+        }
+    }
+
+    //Parses the chunks in parallel and links their records with parts partitions
+    private static DCEL read(List<ByteBuffer> chunks, List<int[]> bounds, int parts){
+        DCELByteReader[] readers = new DCELByteReader[chunks.size()];
+        IntStream.range(0, readers.length).parallel().forEach(c -> {
+            readers[c] = new DCELByteReader();
+            readers[c].parse(chunks.get(c), bounds.get(c)[0], bounds.get(c)[1]);
+        });
+        return concat(readers).link(parts);
+    }
+
+    //The start of the first line beginning at or after i
+    private static int lineStartAfter(ByteBuffer bytes, int i, int limit){
+        if(i == 0) return 0;
+        while(i < limit && bytes.get(i - 1) != '\n') i++;
+        return i;
+    }
+
+    //Reads a DCEL from bytes already in memory, between the buffer's position and limit
+    public static DCEL read(ByteBuffer bytes){
+        DCELByteReader reader = new DCELByteReader();
+        reader.parse(bytes, bytes.position(), bytes.limit());
+        return reader.link(1);
+    }
+
+    //Index just past the last line break in bytes[0..length)
+    static int afterLastLine(ByteBuffer bytes, int length) throws IOException {
+        for(int i = length - 1; i >= 0; i--){
+            if(bytes.get(i) == '\n') return i + 1;
+        }
+        throw new IOException("Line longer than " + length + " bytes");
+    }
+
+    //Parses the lines in bytes[from..to), which must start at the beginning of a line
+    void parse(ByteBuffer bytes, int from, int to){
+        buf = bytes;
+        int start = from;
+        while(start < to){
+            int end = start;
+            while(end < to && bytes.get(end) != '\n') end++;
+            int next = end + 1;
+            if(end > start && bytes.get(end - 1) == '\r') end--;
+            if(end > start){
+                pos = start;
+                lineEnd = end;
+                switch(bytes.get(start)){
+                    case 'v': readVertex(); break;
+                    case 'f': readFace(); break;
+                    case 'e': readHalfEdge(); break;
+                    default: malformed.add(line(start, end));
+                }
+            }
+            start = next;
+        }
+        buf = null;
+    }
+
+    private void readVertex(){
+        int no = nextInt();
+        float x = nextFloat();
+        float y = nextFloat();
+        long incident = nextPair();
+
+        int i = vertices.size();
+        if(i == incidentKeys.length) incidentKeys = Arrays.copyOf(incidentKeys, i * 2);
+        vertices.add(new Vertex(x, y, no));
+        incidentKeys[i] = incident;
+    }
+
+    private void readFace(){
+        int i = faces.size();
+        if(i == faceNos.length){
+            faceNos = Arrays.copyOf(faceNos, i * 2);
+            outerKeys = Arrays.copyOf(outerKeys, i * 2);
+            innerFrom = Arrays.copyOf(innerFrom, i * 2);
+            innerTo = Arrays.copyOf(innerTo, i * 2);
+        }
+
+        int nameStart = nextToken();
+        int nameEnd = pos;
+        faceNos[i] = parseInt(nameStart + 1, nameEnd);
+        faces.add(new Face(line(nameStart, nameEnd)));
+
+        int outerEnd = tokenEnd(nextToken());
+        outerKeys[i] = isNil(outerEnd) ? NIL : pairWithin(outerEnd);
+        pos = outerEnd;
+
+        int innerEnd = tokenEnd(nextToken());
+        if(isNil(innerEnd)){
+            innerFrom[i] = -1;
+        }
+        else{
+            innerFrom[i] = innerCount;
+            while(hasRun(innerEnd)){
+                int a = parseInt(runStart, pos);
+                nextRun(innerEnd);
+                if(innerCount == innerKeys.length) innerKeys = Arrays.copyOf(innerKeys, innerCount * 2);
+                innerKeys[innerCount++] = LongIntMap.pair(a, parseInt(runStart, pos));
+            }
+            innerTo[i] = innerCount;
+        }
+    }
+
+    private void readHalfEdge(){
+        int i = edgeCount++;
+        if(i == edgeKeys.length){
+            edgeKeys = Arrays.copyOf(edgeKeys, i * 2);
+            originNos = Arrays.copyOf(originNos, i * 2);
+            twinKeys = Arrays.copyOf(twinKeys, i * 2);
+            edgeFaceNos = Arrays.copyOf(edgeFaceNos, i * 2);
+            nextKeys = Arrays.copyOf(nextKeys, i * 2);
+            prevKeys = Arrays.copyOf(prevKeys, i * 2);
+        }
+        edgeKeys[i] = nextPair();
+        originNos[i] = nextInt();
+        twinKeys[i] = nextPair();
+        edgeFaceNos[i] = nextInt();
+        nextKeys[i] = nextPair();
+        prevKeys[i] = nextPair();
+    }
+
+    //Creates the half edges and resolves every reference, the way DCELReader's link methods do.
+    //With more than one part the lookup tables are split into that many partitions by key and
+    //every phase runs in parallel on the common fork/join pool. Each record is still resolved
+    //on its own, so the result doesn't depend on the number of parts
+    DCEL link(int parts){
+        for(String line: malformed){
+            System.out.println("Malformed Input!!: " + line);
+        }
+
+        LongIntMap[] vertexIndex = index(vertices.size(), i -> vertices.get(i).no, parts);
+        LongIntMap[] faceIndex = index(faces.size(), i -> faceNos[i], parts);
+        LongIntMap[] edgeIndex = index(edgeCount, i -> edgeKeys[i], parts);
+
+        HalfEdge[] edges = new HalfEdge[edgeCount];
+        range(edgeCount, parts).forEach(i -> {
+            int v = find(vertexIndex, originNos[i]);
+            int f = find(faceIndex, edgeFaceNos[i]);
+            edges[i] = new HalfEdge(v < 0 ? null : vertices.get(v), f < 0 ? null : faces.get(f), i);
+        });
+        range(edgeCount, parts).forEach(i -> {
+            HalfEdge h = edges[i];
+            h.twin = edge(edges, edgeIndex, twinKeys[i]);
+            h.next = edge(edges, edgeIndex, nextKeys[i]);
+            h.prev = edge(edges, edgeIndex, prevKeys[i]);
+        });
+        range(vertices.size(), parts).forEach(i ->
+            vertices.get(i).incidentEdge = edge(edges, edgeIndex, incidentKeys[i])
+        );
+        range(faces.size(), parts).forEach(i -> {
+            Face f = faces.get(i);
+            f.outerComponent = edge(edges, edgeIndex, outerKeys[i]);
+            if(innerFrom[i] >= 0){
+                List<HalfEdge> inner = new ArrayList<>(innerTo[i] - innerFrom[i]);
+                for(int j = innerFrom[i]; j < innerTo[i]; j++){
+                    inner.add(edge(edges, edgeIndex, innerKeys[j]));
+                }
+                f.innerComponent = inner;
+            }
+        });
+        return new DCEL(vertices, new ArrayList<>(Arrays.asList(edges)), faces);
+    }
+
+    //Maps key(i) to i for i < n, a later i replacing an earlier one with the same key. Partition p
+    //holds the keys with partition(key) == p. With more than one part, a task per block of keys
+    //sorts the block's indices into buckets by partition, and a task per partition then fills it
+    //from its bucket of every block in block order, so each key is only handled twice
+    private static LongIntMap[] index(int n, IntToLongFunction key, int parts){
+        LongIntMap[] index = new LongIntMap[parts];
+        if(parts == 1){
+            index[0] = new LongIntMap(n);
+            for(int i = 0; i < n; i++) index[0].put(key.applyAsLong(i), i);
+            return index;
+        }
+
+        int[][][] buckets = new int[parts][parts][]; // Indices of block b in partition p, buckets[b][p]
+        range(parts, parts).forEach(b -> {
+            int from = (int) ((long) n * b / parts);
+            int to = (int) ((long) n * (b + 1) / parts);
+            int[] partOf = new int[to - from];
+            int[] counts = new int[parts];
+            for(int i = from; i < to; i++){
+                int p = partition(key.applyAsLong(i), parts);
+                partOf[i - from] = p;
+                counts[p]++;
+            }
+            for(int p = 0; p < parts; p++) buckets[b][p] = new int[counts[p]];
+            Arrays.fill(counts, 0);
+            for(int i = from; i < to; i++){
+                int p = partOf[i - from];
+                buckets[b][p][counts[p]++] = i;
+            }
+        });
+        range(parts, parts).forEach(p -> {
+            int size = 0;
+            for(int b = 0; b < parts; b++) size += buckets[b][p].length;
+            LongIntMap part = new LongIntMap(size);
+            for(int b = 0; b < parts; b++){
+                for(int i: buckets[b][p]) part.put(key.applyAsLong(i), i);
+            }
+            index[p] = part;
+        });
+        return index;
+    }
+
+    private static int partition(long key, int parts){
+        return parts == 1 ? 0 : (int) ((key * 0xC2B2AE3D27D4EB4FL) >>> 33) % parts;
+    }
+
+    private static int find(LongIntMap[] index, long key){
+        return index[partition(key, index.length)].get(key);
+    }
+
+    private static IntStream range(int n, int parts){
+        IntStream range = IntStream.range(0, n);
+        return parts > 1 ? range.parallel() : range;
+    }
+
+    static HalfEdge edge(HalfEdge[] edges, LongIntMap[] edgeIndex, long key){
+        if(key == NIL) return null;
+        int i = find(edgeIndex, key);
+        return i < 0 ? null : edges[i];
+    }
+
+    //Concatenates the records of readers in order, as if one reader had parsed all their input
+    static DCELByteReader concat(DCELByteReader[] readers){
+        if(readers.length == 1) return readers[0];
+        DCELByteReader all = new DCELByteReader();
+        int vertexCount = 0;
+        int faceCount = 0;
+        int innerTotal = 0;
+        int edgeTotal = 0;
+        for(DCELByteReader r: readers){
+            vertexCount += r.vertices.size();
+            faceCount += r.faces.size();
+            innerTotal += r.innerCount;
+            edgeTotal += r.edgeCount;
+        }
+        all.vertices = new ArrayList<>(vertexCount);
+        all.incidentKeys = new long[vertexCount];
+        all.faces = new ArrayList<>(faceCount);
+        all.faceNos = new int[faceCount];
+        all.outerKeys = new long[faceCount];
+        all.innerFrom = new int[faceCount];
+        all.innerTo = new int[faceCount];
+        all.innerKeys = new long[innerTotal];
+        all.edgeKeys = new long[edgeTotal];
+        all.originNos = new int[edgeTotal];
+        all.twinKeys = new long[edgeTotal];
+        all.edgeFaceNos = new int[edgeTotal];
+        all.nextKeys = new long[edgeTotal];
+        all.prevKeys = new long[edgeTotal];
+
+        for(DCELByteReader r: readers){
+            int v = all.vertices.size();
+            System.arraycopy(r.incidentKeys, 0, all.incidentKeys, v, r.vertices.size());
+            all.vertices.addAll(r.vertices);
+
+            int f = all.faces.size();
+            int n = r.faces.size();
+            System.arraycopy(r.faceNos, 0, all.faceNos, f, n);
+            System.arraycopy(r.outerKeys, 0, all.outerKeys, f, n);
+            for(int i = 0; i < n; i++){
+                all.innerFrom[f + i] = r.innerFrom[i] < 0 ? -1 : r.innerFrom[i] + all.innerCount;
+                all.innerTo[f + i] = r.innerTo[i] + all.innerCount;
+            }
+            all.faces.addAll(r.faces);
+            System.arraycopy(r.innerKeys, 0, all.innerKeys, all.innerCount, r.innerCount);
+            all.innerCount += r.innerCount;
+
+            int e = all.edgeCount;
+            n = r.edgeCount;
+            System.arraycopy(r.edgeKeys, 0, all.edgeKeys, e, n);
+            System.arraycopy(r.originNos, 0, all.originNos, e, n);
+            System.arraycopy(r.twinKeys, 0, all.twinKeys, e, n);
+            System.arraycopy(r.edgeFaceNos, 0, all.edgeFaceNos, e, n);
+            System.arraycopy(r.nextKeys, 0, all.nextKeys, e, n);
+            System.arraycopy(r.prevKeys, 0, all.prevKeys, e, n);
+            all.edgeCount += n;
+
+            all.malformed.addAll(r.malformed);
+        }
+        return all;
+    }
+
+    //Moves to the next run of digits and dots, the characters DCELReader keeps, within limit
+    private boolean hasRun(int limit){
+        while(pos < limit){
+            byte c = buf.get(pos);
+            if((c >= '0' && c <= '9') || c == '.') break;
+            if(c == '-' && pos + 1 < limit && (isNumeric(buf.get(pos + 1)))) break;
+            pos++;
+        }
+        if(pos == limit) return false;
+        runStart = pos++;
+        while(pos < limit && isNumeric(buf.get(pos))) pos++;
+        return true;
+    }
+
+    private static boolean isNumeric(byte c){
+        return (c >= '0' && c <= '9') || c == '.';
+    }
+
+    private void nextRun(int limit){
+        if(!hasRun(limit))
+            throw new IllegalArgumentException("Malformed record: " + line(lineStart(), lineEnd));
+    }
+
+    private int nextInt(){
+        nextRun(lineEnd);
+        return parseInt(runStart, pos);
+    }
+
+    private float nextFloat(){
+        nextRun(lineEnd);
+        return parseFloat(buf, runStart, pos);
+    }
+
+    private long nextPair(){
+        int a = nextInt();
+        return LongIntMap.pair(a, nextInt());
+    }
+
+    private long pairWithin(int limit){
+        nextRun(limit);
+        int a = parseInt(runStart, pos);
+        nextRun(limit);
+        return LongIntMap.pair(a, parseInt(runStart, pos));
+    }
+
+    //Skips blanks and returns the start of the next whitespace separated token
+    private int nextToken(){
+        while(pos < lineEnd && isBlank(buf.get(pos))) pos++;
+        if(pos == lineEnd)
+            throw new IllegalArgumentException("Malformed record: " + line(lineStart(), lineEnd));
+        int start = pos;
+        while(pos < lineEnd && !isBlank(buf.get(pos))) pos++;
+        return start;
+    }
+
+    private int tokenEnd(int start){
+        int end = pos;
+        pos = start;
+        return end;
+    }
+
+    private boolean isNil(int end){
+        return end - pos == 3 && buf.get(pos) == 'n' && buf.get(pos + 1) == 'i' && buf.get(pos + 2) == 'l';
+    }
+
+    private static boolean isBlank(byte c){
+        return c == ' ' || c == '\t';
+    }
+
+    private int lineStart(){
+        int i = Math.min(pos, lineEnd);
+        while(i > 0 && buf.get(i - 1) != '\n') i--;
+        return i;
+    }
+
+    private int parseInt(int from, int to){
+        boolean negative = buf.get(from) == '-';
+        int i = negative ? from + 1 : from;
+        if(i == to || to - i > 10) throw new NumberFormatException(line(from, to));
+        long n = 0;
+        for(; i < to; i++){
+            byte c = buf.get(i);
+            if(c < '0' || c > '9') throw new NumberFormatException(line(from, to));
+            n = n * 10 + (c - '0');
+        }
+        n = negative ? -n : n;
+        if(n != (int) n) throw new NumberFormatException(line(from, to));
+        return (int) n;
+    }
+
+    //Correctly rounded like Float.parseFloat. Short decimals are divided exactly in double precision,
+    //the rare cases where rounding that to float could differ from rounding the decimal directly fall
+    //back to Float.parseFloat
+    static float parseFloat(ByteBuffer buf, int from, int to){
+        boolean negative = buf.get(from) == '-';
+        int i = negative ? from + 1 : from;
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for(; i < to; i++){
+            byte c = buf.get(i);
+            if(c == '.'){
+                if(scale >= 0) return Float.parseFloat(line(buf, from, to));
+                scale = 0;
+                continue;
+            }
+            mantissa = mantissa * 10 + (c - '0');
+            digits++;
+            if(scale >= 0) scale++;
+        }
+        if(digits == 0 || digits > 15 || scale >= POW10.length) return Float.parseFloat(line(buf, from, to));
+
+        double d = scale > 0 ? mantissa / POW10[scale] : mantissa;
+        long bits = Double.doubleToRawLongBits(d);
+        if((bits & 0x1FFFFFFFL) == 0x10000000L || (d != 0 && d < Float.MIN_NORMAL) || d > Float.MAX_VALUE)
+            return Float.parseFloat(line(buf, from, to));
+        float f = (float) d;
+        return negative ? -f : f;
+    }
+
+    private String line(int from, int to){
+        return line(buf, from, to);
+    }
+
+    static String line(ByteBuffer buf, int from, int to){
+        byte[] bytes = new byte[to - from];
+        for(int i = from; i < to; i++) bytes[i - from] = buf.get(i);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,285 @@
+package main.input;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+//Writes synthetic planar subdivisions in the format DCELReader reads, for testing and measuring
+//at sizes up to millions of edges. The subdivision is kept in int and float arrays while it is
+//generated: half-edges are allocated in twin pairs, so the twin of h is h ^ 1, and face 0 is the
+//unbounded face. Coordinates are non-negative and written without exponents, which both readers
+//parse. Usage: DCELGenerator <scene> <edges> <seed> <file>
+public class DCELGenerator {
+
+    public enum Scene {
+        SEGMENTS, // Random segments, one in each cell of a grid so none cross, all holes of the unbounded face
+        GRID,     // Jittered grid of quadrilaterals
+        HOLES,    // Squares nested HOLE_DEPTH deep, each face but the innermost has the next square as a hole
+        SLIVERS,  // Grid of cells 1024 times wider than high, split into long skinny triangles
+        VERTICAL  // Grid whose columns are jittered by less than 1e-4, so most edges are vertical or nearly
+    }
+
+    private static final int HOLE_DEPTH = 4;
+
+    private float[] xs = new float[16];
+    private float[] ys = new float[16];
+    private int[] incident = new int[16];
+    private int vertexCount;
+
+    private int[] origin = new int[16];
+    private int[] face = new int[16];
+    private int[] next = new int[16];
+    private int halfEdgeCount;
+    private LongIntMap edges = new LongIntMap(16);
+
+    private int[] outer = new int[16];
+    private int faceCount;
+    private int[] innerFace = new int[16]; // Inner components as (face, half-edge) pairs
+    private int[] innerEdge = new int[16];
+    private int innerCount;
+
+    private final Random random;
+
+    private DCELGenerator(long seed){
+        random = new Random(seed);
+        newFace();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length != 4){
+            System.out.println("Usage: DCELGenerator <segments|grid|holes|slivers|vertical> <edges> <seed> <file>");
+            return;
+        }
+        Scene scene = Scene.valueOf(args[0].toUpperCase(Locale.ROOT));
+        write(scene, Integer.parseInt(args[1]), Long.parseLong(args[2]), Paths.get(args[3]));
+    }
+
+    //Writes a subdivision of the scene with about the given number of edges
+    public static void write(Scene scene, int edges, long seed, Path file) throws IOException {
+        DCELGenerator g = new DCELGenerator(seed);
+        switch(scene){
+            case SEGMENTS: g.segments(edges); break;
+            case GRID: g.grid(side(edges, 0), 1, 1, .3f, .3f, false); break;
+            case HOLES: g.holes((int) Math.max(1, Math.round(Math.sqrt(edges / (4.0 * HOLE_DEPTH))))); break;
+            case SLIVERS: g.grid(side(edges, 1), 1, 1 / 1024f, .2f, .2f / 1024, true); break;
+            case VERTICAL: g.grid(side(edges, 0), 1, 1, .00005f, .3f, false); break;
+        }
+        try(BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)){
+            g.write(out);
+        }
+    }
+
+    //Side of a square grid with about the given number of edges, 2w(w + 1) + diagonals * w * w
+    private static int side(int edges, int diagonals){
+        double a = 2 + diagonals;
+        return (int) Math.max(1, Math.round((Math.sqrt(4 + 4 * a * edges) - 2) / (2 * a)));
+    }
+
+    private void segments(int edges){
+        int k = (int) Math.max(1, Math.ceil(Math.sqrt(edges)));
+        for(int n = 0; n < edges; n++){
+            int i = n % k, j = n / k;
+            int a = vertex(i + .05f + .9f * random.nextFloat(), j + .05f + .9f * random.nextFloat());
+            int b = vertex(i + .05f + .9f * random.nextFloat(), j + .05f + .9f * random.nextFloat());
+            int h = halfEdge(a, b);
+            next[h] = h ^ 1;
+            next[h ^ 1] = h;
+            face[h] = 0;
+            face[h ^ 1] = 0;
+            inner(0, h);
+        }
+    }
+
+    //A w by w grid of cells of width cellW and height cellH. Interior vertices are moved by up to
+    //jitterX and jitterY either way, the boundary is kept straight. Cells stay convex, so they can be
+    //split along a diagonal, while the jitter is under a quarter of the cell
+    private void grid(int w, float cellW, float cellH, float jitterX, float jitterY, boolean diagonals){
+        int first = vertexCount;
+        for(int i = 0; i <= w; i++){
+            for(int j = 0; j <= w; j++){
+                float x = i * cellW;
+                float y = j * cellH;
+                if(i > 0 && i < w) x += (random.nextFloat() * 2 - 1) * jitterX;
+                if(j > 0 && j < w) y += (random.nextFloat() * 2 - 1) * jitterY;
+                vertex(x, y);
+            }
+        }
+        for(int i = 0; i < w; i++){
+            for(int j = 0; j < w; j++){
+                int a = first + i * (w + 1) + j;
+                int b = a + w + 1;
+                int c = b + 1;
+                int d = a + 1;
+                if(diagonals){
+                    boundary(newFace(), false, a, b, c);
+                    boundary(newFace(), false, a, c, d);
+                }
+                else{
+                    boundary(newFace(), false, a, b, c, d);
+                }
+            }
+        }
+        //The outer boundary, clockwise so the unbounded face is to its left
+        int[] ring = new int[4 * w];
+        int k = 0;
+        for(int j = 0; j < w; j++) ring[k++] = first + j;
+        for(int i = 0; i < w; i++) ring[k++] = first + i * (w + 1) + w;
+        for(int j = w; j > 0; j--) ring[k++] = first + w * (w + 1) + j;
+        for(int i = w; i > 0; i--) ring[k++] = first + i * (w + 1);
+        boundary(0, true, ring);
+    }
+
+    //A g by g arrangement of nested squares. The corners are jittered by less than a quarter of the
+    //gap between two squares so they stay nested
+    private void holes(int g){
+        float gap = .45f / HOLE_DEPTH;
+        for(int i = 0; i < g; i++){
+            for(int j = 0; j < g; j++){
+                int around = 0;
+                for(int k = 0; k < HOLE_DEPTH; k++){
+                    float s = .45f - k * gap;
+                    int[] square = new int[4];
+                    for(int c = 0; c < 4; c++){
+                        float dx = c == 0 || c == 3 ? -s : s;
+                        float dy = c < 2 ? -s : s;
+                        square[c] = vertex(i + .5f + dx + (random.nextFloat() - .5f) * gap / 2,
+                                j + .5f + dy + (random.nextFloat() - .5f) * gap / 2);
+                    }
+                    int inside = newFace();
+                    boundary(inside, false, square);
+                    boundary(around, true, square[3], square[2], square[1], square[0]);
+                    around = inside;
+                }
+            }
+        }
+    }
+
+    private int vertex(float x, float y){
+        if(vertexCount == xs.length){
+            xs = Arrays.copyOf(xs, vertexCount * 2);
+            ys = Arrays.copyOf(ys, vertexCount * 2);
+            incident = Arrays.copyOf(incident, vertexCount * 2);
+        }
+        xs[vertexCount] = x;
+        ys[vertexCount] = y;
+        incident[vertexCount] = -1;
+        return vertexCount++;
+    }
+
+    //The half-edge from a to b, creating it and its twin the first time the edge is asked for
+    private int halfEdge(int a, int b){
+        long key = LongIntMap.pair(Math.min(a, b), Math.max(a, b));
+        int h = edges.get(key);
+        if(h < 0){
+            if(halfEdgeCount == origin.length){
+                origin = Arrays.copyOf(origin, halfEdgeCount * 2);
+                face = Arrays.copyOf(face, halfEdgeCount * 2);
+                next = Arrays.copyOf(next, halfEdgeCount * 2);
+            }
+            h = halfEdgeCount;
+            halfEdgeCount += 2;
+            origin[h] = a;
+            origin[h ^ 1] = b;
+            if(incident[a] < 0) incident[a] = h;
+            if(incident[b] < 0) incident[b] = h ^ 1;
+            edges.put(key, h);
+        }
+        return origin[h] == a ? h : h ^ 1;
+    }
+
+    //Links the cycle of half-edges through vertices, which has face f to its left, and records it
+    //as the outer component of f or as one of its holes
+    private void boundary(int f, boolean hole, int... vertices){
+        int n = vertices.length;
+        int first = halfEdge(vertices[0], vertices[1]);
+        int h = first;
+        for(int k = 0; k < n; k++){
+            int following = k == n - 1 ? first : halfEdge(vertices[(k + 1) % n], vertices[(k + 2) % n]);
+            next[h] = following;
+            face[h] = f;
+            h = following;
+        }
+        if(hole) inner(f, first);
+        else outer[f] = first;
+    }
+
+    private int newFace(){
+        if(faceCount == outer.length) outer = Arrays.copyOf(outer, faceCount * 2);
+        outer[faceCount] = -1;
+        return faceCount++;
+    }
+
+    private void inner(int f, int h){
+        if(innerCount == innerFace.length){
+            innerFace = Arrays.copyOf(innerFace, innerCount * 2);
+            innerEdge = Arrays.copyOf(innerEdge, innerCount * 2);
+        }
+        innerFace[innerCount] = f;
+        innerEdge[innerCount++] = h;
+    }
+
+    private void write(Writer out) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for(int v = 0; v < vertexCount; v++){
+            line.setLength(0);
+            line.append('v').append(v + 1).append("  (").append(plain(xs[v])).append(", ").append(plain(ys[v])).append(")  ");
+            name(line, incident[v]);
+            out.write(line.append('\n').toString());
+        }
+        out.write('\n');
+
+        //Group the holes by face
+        int[] start = new int[faceCount + 1];
+        for(int i = 0; i < innerCount; i++) start[innerFace[i] + 1]++;
+        for(int f = 0; f < faceCount; f++) start[f + 1] += start[f];
+        int[] holes = new int[innerCount];
+        int[] fill = Arrays.copyOf(start, faceCount);
+        for(int i = 0; i < innerCount; i++) holes[fill[innerFace[i]]++] = innerEdge[i];
+
+        for(int f = 0; f < faceCount; f++){
+            line.setLength(0);
+            line.append('f').append(f + 1).append("  ");
+            if(outer[f] < 0) line.append("nil");
+            else name(line, outer[f]);
+            line.append("  ");
+            if(start[f] == start[f + 1]) line.append("nil");
+            for(int i = start[f]; i < start[f + 1]; i++){
+                if(i > start[f]) line.append(';');
+                name(line, holes[i]);
+            }
+            out.write(line.append('\n').toString());
+        }
+        out.write('\n');
+
+        int[] prev = new int[halfEdgeCount];
+        for(int h = 0; h < halfEdgeCount; h++) prev[next[h]] = h;
+        for(int h = 0; h < halfEdgeCount; h++){
+            line.setLength(0);
+            name(line, h);
+            line.append("  v").append(origin[h] + 1).append("  ");
+            name(line, h ^ 1);
+            line.append("  f").append(face[h] + 1).append("  ");
+            name(line, next[h]);
+            line.append("  ");
+            name(line, prev[h]);
+            out.write(line.append('\n').toString());
+        }
+    }
+
+    private void name(StringBuilder line, int h){
+        line.append('e').append(origin[h] + 1).append(',').append(origin[h ^ 1] + 1);
+    }
+
+    //The shortest decimal that reads back as v, never in scientific notation
+    static String plain(float v){
+        return new BigDecimal(Float.toString(v)).toPlainString();
+    }
+}
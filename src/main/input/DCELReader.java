@@ -1,5 +1,6 @@
 package main.input;
 
+import main.metrics.BuildRecorder;
 import main.structures.DCEL.DCEL;
 import main.structures.DCEL.Face;
 import main.structures.DCEL.HalfEdge;
@@ -30,6 +31,7 @@ public class DCELReader {
 
 
     public DCEL readDCEL(){
+        BuildRecorder.Phase phase = BuildRecorder.RECORDER.phase(BuildRecorder.READ);
 
         while(fileScanner.hasNextLine()){
             String line = fileScanner.nextLine();
@@ -59,6 +61,7 @@ public class DCELReader {
         linkFaces();
         linkHalfEdges();
 
+        phase.end(halfEdges.size());
         return new DCEL(vertices, halfEdges, faces);
     }
 
@@ -140,7 +143,7 @@ public class DCELReader {
         Vertex origin = vertexMap.get(originNo);
         Face incident = faceMap.get(faceNo);
 
-        HalfEdge h = new HalfEdge(origin, incident, e1, e2);
+        HalfEdge h = new HalfEdge(origin, incident, halfEdges.size());
 
         String twin = twinE1 + " " + twinE2;
         String next = nextE1 + " " + nextE2;
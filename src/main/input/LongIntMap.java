@@ -0,0 +1,67 @@
+package main.input;
+
+//Open addressing hash table from long keys to non-negative ints, used to resolve DCEL
+//references without building a string key for every lookup. A later put of the same
+//key replaces the earlier value, as with a HashMap
+class LongIntMap {
+
+    private long[] keys;
+    private int[] values; // value + 1, 0 marks an empty slot
+    private int size;
+    private int mask;
+
+    LongIntMap(int expected){
+        int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    void put(long key, int value){
+        int i = slot(key);
+        while(values[i] != 0 && keys[i] != key) i = (i + 1) & mask;
+        if(values[i] == 0){
+            keys[i] = key;
+            if(++size * 2 > keys.length){
+                values[i] = value + 1;
+                grow();
+                return;
+            }
+        }
+        values[i] = value + 1;
+    }
+
+    //The value of key, or -1 if it isn't in the table
+    int get(long key){
+        int i = slot(key);
+        while(values[i] != 0){
+            if(keys[i] == key) return values[i] - 1;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    static long pair(int a, int b){
+        return ((long) a << 32) | (b & 0xffffffffL);
+    }
+
+    private int slot(long key){
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void grow(){
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        mask = keys.length - 1;
+        for(int j = 0; j < oldKeys.length; j++){
+            if(oldValues[j] == 0) continue;
+            int i = slot(oldKeys[j]);
+            while(values[i] != 0) i = (i + 1) & mask;
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package main.input;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+//Reads query points from a stream, one point per line, without Scanner or regular expressions.
+//Any characters but digits and dots separate the numbers, so "(1.5, 2)" and "1.5 2" are the same
+//point, but a minus sign directly before a number is kept. Lines without a number are skipped,
+//numbers after the first two on a line are ignored. Interactive queries are parsed by point, so
+//they follow the same rule, unlike the DCEL lines InputHelper.nonDigitsToBlanks strips of signs
+public class QueryReader {
+
+    private static final int BUFFER = 1 << 16;
+
+    private final InputStream in;
+    private final byte[] bytes = new byte[BUFFER];
+    private final ByteBuffer buf = ByteBuffer.wrap(bytes);
+    private int pos;
+    private int limit;
+    private boolean eof;
+
+    public QueryReader(InputStream in){
+        this.in = in;
+    }
+
+    //The point on one line of interactive input as {x, y}, or null if the line has no number
+    public static float[] point(String line){
+        float[] x = new float[1];
+        float[] y = new float[1];
+        try{
+            if(new QueryReader(new ByteArrayInputStream(line.getBytes(StandardCharsets.UTF_8))).read(x, y) == 0) return null;
+        }
+        catch(IOException e){
+            throw new UncheckedIOException(e); //Not thrown reading from memory
+        }
+        return new float[]{x[0], y[0]};
+    }
+
+    //Reads up to xs.length points into xs and ys, returns how many were read. Fewer than
+    //xs.length, possibly 0, only at the end of the stream
+    public int read(float[] xs, float[] ys) throws IOException {
+        int n = 0;
+        while(n < xs.length){
+            int end = lineEnd();
+            if(end < 0) break;
+            int from = run(pos, end);
+            if(from < end){
+                int to = runEnd(from, end);
+                int next = run(to, end);
+                if(next == end)
+                    throw new IllegalArgumentException("Malformed query: " + DCELByteReader.line(buf, pos, end));
+                xs[n] = DCELByteReader.parseFloat(buf, from, to);
+                ys[n] = DCELByteReader.parseFloat(buf, next, runEnd(next, end));
+                n++;
+            }
+            pos = end + 1;
+        }
+        return n;
+    }
+
+    //The end of the line starting at pos, reading more of the stream if it isn't buffered yet,
+    //or -1 if the stream is exhausted
+    private int lineEnd() throws IOException {
+        int scanned = pos;
+        while(true){
+            for(int i = scanned; i < limit; i++){
+                if(bytes[i] == '\n') return i;
+            }
+            if(eof) return pos < limit ? limit : -1;
+            if(pos > 0){
+                System.arraycopy(bytes, pos, bytes, 0, limit - pos);
+                limit -= pos;
+                pos = 0;
+            }
+            if(limit == bytes.length) throw new IllegalArgumentException("Query line longer than " + BUFFER + " bytes");
+            scanned = limit;
+            int read = in.read(bytes, limit, bytes.length - limit);
+            if(read < 0) eof = true;
+            else limit += read;
+        }
+    }
+
+    //The start of the first number at or after i, or end
+    private int run(int i, int end){
+        for(; i < end; i++){
+            byte c = bytes[i];
+            if(isNumeric(c)) return i;
+            if(c == '-' && i + 1 < end && isNumeric(bytes[i + 1])) return i;
+        }
+        return end;
+    }
+
+    private int runEnd(int i, int end){
+        i++;
+        while(i < end && isNumeric(bytes[i])) i++;
+        return i;
+    }
+
+    private static boolean isNumeric(byte c){
+        return (c >= '0' && c <= '9') || c == '.';
+    }
+}
@@ -0,0 +1,93 @@
+package main.input;
+
+import main.structures.DCEL.DCEL;
+import main.structures.DCEL.HalfEdge;
+import main.structures.DCEL.Vertex;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Random;
+
+//Writes query points for a DCEL file, one "x y" pair per line, all within the extent of its
+//vertices. Usage: QueryTraceGenerator <dcel file> <uniform|clustered|features> <count> <seed> <trace file>
+public class QueryTraceGenerator {
+
+    public enum Distribution {
+        UNIFORM,   // Uniform over the extent
+        CLUSTERED, // Normally distributed around CLUSTERS random centers, a hundredth of the extent wide
+        FEATURES   // Alternately exactly on a vertex and on a random point of an edge
+    }
+
+    private static final int CLUSTERS = 16;
+
+    public static void main(String[] args) throws IOException {
+        if(args.length != 5){
+            System.out.println("Usage: QueryTraceGenerator <dcel file> <uniform|clustered|features> <count> <seed> <trace file>");
+            return;
+        }
+        DCEL dcel = DCELByteReader.read(Paths.get(args[0]));
+        Distribution distribution = Distribution.valueOf(args[1].toUpperCase(Locale.ROOT));
+        write(dcel, distribution, Integer.parseInt(args[2]), Long.parseLong(args[3]), Paths.get(args[4]));
+    }
+
+    public static void write(DCEL dcel, Distribution distribution, int count, long seed, Path file) throws IOException {
+        float left = Float.MAX_VALUE, right = -Float.MAX_VALUE, bottom = Float.MAX_VALUE, top = -Float.MAX_VALUE;
+        for(Vertex v: dcel.vertices){
+            left = Math.min(left, v.x);
+            right = Math.max(right, v.x);
+            bottom = Math.min(bottom, v.y);
+            top = Math.max(top, v.y);
+        }
+        float width = right - left;
+        float height = top - bottom;
+
+        Random random = new Random(seed);
+        float[] centers = new float[2 * CLUSTERS];
+        for(int c = 0; c < CLUSTERS; c++){
+            centers[2 * c] = left + random.nextFloat() * width;
+            centers[2 * c + 1] = bottom + random.nextFloat() * height;
+        }
+
+        try(BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)){
+            StringBuilder line = new StringBuilder();
+            for(int i = 0; i < count; i++){
+                float x, y;
+                switch(distribution){
+                    case UNIFORM:
+                        x = left + random.nextFloat() * width;
+                        y = bottom + random.nextFloat() * height;
+                        break;
+                    case CLUSTERED:
+                        int c = random.nextInt(CLUSTERS);
+                        x = clamp(centers[2 * c] + (float) random.nextGaussian() * width / 100, left, right);
+                        y = clamp(centers[2 * c + 1] + (float) random.nextGaussian() * height / 100, bottom, top);
+                        break;
+                    default:
+                        if((i & 1) == 0){
+                            Vertex v = dcel.vertices.get(random.nextInt(dcel.vertices.size()));
+                            x = v.x;
+                            y = v.y;
+                        }
+                        else{
+                            HalfEdge e = dcel.halfEdges.get(random.nextInt(dcel.halfEdges.size()));
+                            float t = .1f + .8f * random.nextFloat();
+                            x = e.origin.x + t * (e.twin.origin.x - e.origin.x);
+                            y = e.origin.y + t * (e.twin.origin.y - e.origin.y);
+                        }
+                }
+                line.setLength(0);
+                line.append(DCELGenerator.plain(x)).append(' ').append(DCELGenerator.plain(y)).append('\n');
+                out.write(line.toString());
+            }
+        }
+    }
+
+    private static float clamp(float v, float min, float max){
+        return Math.max(min, Math.min(max, v));
+    }
+}
@@ -1,69 +1,276 @@
 package main.input;
+import main.metrics.BuildRecorder;
 import main.structures.DCEL.DCEL;
 import main.structures.DCEL.Face;
 import main.structures.DCEL.HalfEdge;
 import main.structures.DCEL.Vertex;
+import main.structures.Predicates;
 import main.structures.Trapezoid;
 import main.structures.TrapezoidMap;
 import main.structures.search.*;
 import main.structures.Segment;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public class TrapMapBuilder {
 
     private static float epsilon = 0.0001f;
+    static final int maxAttempts = 32; //Builds tried by the depth bounded buildTrapMap before settling for the shallowest
 
+    //Inserts the segments in the order they appear in the DCEL file
     public static TrapezoidMap buildTrapMap(DCEL dcel) {
+        return buildTrapMap(dcel, getSegments(dcel.halfEdges), null, null);
+    }
+
+    //Inserts the segments in a random permutation drawn from seed. The seed is recorded on the
+    //map so a build can be reproduced. Expected O(n log n) build time and O(log n) query depth
+    public static TrapezoidMap buildTrapMap(DCEL dcel, long seed) {
+        List<Segment> segments = getSegments(dcel.halfEdges);
+        Collections.shuffle(segments, new Random(seed));
+        return buildTrapMap(dcel, segments, seed, null);
+    }
+
+    //Randomized build that hands the map to published as soon as it holds the bounding box, before
+    //any segment is inserted. Other threads may query it while the build runs without taking locks:
+    //each insertion swaps fully built subtrees into the search structure with single volatile writes,
+    //so a query answers from the map as it was either before or after that insertion
+    public static TrapezoidMap buildTrapMap(DCEL dcel, long seed, Consumer<TrapezoidMap> published) {
         List<Segment> segments = getSegments(dcel.halfEdges);
+        Collections.shuffle(segments, new Random(seed));
+        return buildTrapMap(dcel, segments, seed, published);
+    }
+
+    //Las Vegas version of the randomized build. After each build the longest search path is measured
+    //and the map is rebuilt from a new permutation while it is longer than depthFactor * ln(n + 1).
+    //The seeds of the attempts are drawn from seed, so the whole sequence is reproducible. The map
+    //records the seed of the accepted permutation, the bound and how many rebuilds were made. If no
+    //attempt meets the bound within maxAttempts the shallowest one is returned with depthBoundMet
+    //false, which its metrics MBean shows too. Every attempt is a map of its own, faces included:
+    //only the returned map lists trapezoids under the faces, see TrapezoidMap.trapezoids
+    public static TrapezoidMap buildTrapMap(DCEL dcel, long seed, double depthFactor) {
+        List<Segment> segments = getSegments(dcel.halfEdges);
+        int bound = (int) (depthFactor * Math.log(segments.size() + 1));
+        Random seeds = new Random(seed);
+
+        TrapezoidMap best = null;
+        int attempts = 0;
+        while (attempts < maxAttempts) {
+            long attemptSeed = attempts == 0 ? seed : seeds.nextLong();
+            attempts++;
+            List<Segment> permutation = new ArrayList<>(segments);
+            Collections.shuffle(permutation, new Random(attemptSeed));
+            TrapezoidMap trapMap = buildTrapMap(dcel, permutation, attemptSeed, null);
+            trapMap.depth = trapMap.depth();
+            if (best == null || trapMap.depth < best.depth) {
+                best = trapMap;
+            }
+            if (trapMap.depth <= bound) break;
+        }
+        best.boundDepth(bound, attempts - 1);
+        return best;
+    }
+
+    //Builds a map over segments inside an existing bounding box, inserting them in a random
+    //permutation drawn from seed. Used to rebuild a map that has been edited
+    public static TrapezoidMap buildTrapMap(List<Segment> boundingBox, Face unbounded, List<Segment> segments, long seed) {
+        Map<Integer, Segment> bb = new HashMap<>();
+        for (Segment side : boundingBox) {
+            bb.put(side.no, side);
+        }
+        List<Segment> permutation = new ArrayList<>(segments);
+        Collections.shuffle(permutation, new Random(seed));
+        return buildTrapMap(bb, unbounded, permutation, seed, null);
+    }
+
+    private static TrapezoidMap buildTrapMap(DCEL dcel, List<Segment> segments, Long seed, Consumer<TrapezoidMap> published) {
         Face unbounded = getUnboundedFace(dcel.faces);
-        Map<String, Segment> bb = getBoundingBox(segments, unbounded);
+        return buildTrapMap(getBoundingBox(segments, unbounded), unbounded, segments, seed, published);
+    }
+
+    private static TrapezoidMap buildTrapMap(Map<Integer, Segment> bb, Face unbounded, List<Segment> segments, Long seed, Consumer<TrapezoidMap> published) {
         List<Segment> boundingList = new ArrayList<>(bb.values());
-        Segment l = bb.get("L");
-        Segment r = bb.get("R");
-        Segment t = bb.get("T");
-        Segment b = bb.get("B");
-        Trapezoid trapRoot = new Trapezoid(b.p, b.q, t, b);
+        Segment l = bb.get(Segment.L);
+        Segment r = bb.get(Segment.R);
+        Segment t = bb.get(Segment.T);
+        Segment b = bb.get(Segment.B);
+        Trapezoid trapRoot = new Trapezoid(b.p, b.q, t, b, 0);
+        trapRoot.containingFace = unbounded;
         SearchStructure ss = new SearchStructure(l, r, t, b, trapRoot);
         TrapezoidMap trapMap = new TrapezoidMap(ss, boundingList, trapRoot);
+        trapMap.seed = seed;
+        if (published != null) {
+            published.accept(trapMap);
+        }
 
+        BuildRecorder.Phase insertion = BuildRecorder.RECORDER.phase(BuildRecorder.INSERTION);
         for (Segment s : segments) {
             trapMap.segments.add(s);
+            insertSegment(trapMap, ss, s);
+        }
+        insertion.end(segments.size());
 
-            //Find the set ∆0,∆1,...,∆k of trapezoids in T properly intersected
-            //by si.
-            List<Trapezoid> intersecting = ss.followSegment(s);
+        return trapMap;
+    }
 
-            //Remove ∆0,∆1,...,∆k from T and replace
-            //them by the new trapezoids that appear because of the insertion of si.
-            trapMap.traps.removeAll(intersecting);
+    //Adds s to the trapezoids of a map whose search structure is ss, the caller lists it in
+    //trapMap.segments. s must lie inside the bounding box and must not cross any segment of the
+    //map. Costs O(k + depth) for the k trapezoids s crosses
+    public static void insertSegment(TrapezoidMap trapMap, SearchStructure ss, Segment s) {
+        BuildRecorder.Insertion recorded = BuildRecorder.RECORDER.insertion();
+
+        //Find the set ∆0,∆1,...,∆k of trapezoids in T properly intersected
+        //by si.
+        List<Trapezoid> intersecting = ss.followSegment(s);
+
+        //Remove ∆0,∆1,...,∆k from T and replace
+        //them by the new trapezoids that appear because of the insertion of si.
+        removeTrapezoids(trapMap, intersecting);
+
+        int crossed = intersecting.size();
+        // An XNode for each endpoint not yet in T, found before the handlers relink the neighbors
+        int xNodes = (intersecting.get(0).leftp != s.p ? 1 : 0) + (intersecting.get(crossed - 1).rightp != s.q ? 1 : 0);
+        int created;
+        if (crossed == 1) {
+            created = handleOneIntersectingTrap(trapMap, s, intersecting);
+        } else {
+            created = handleManyIntersectingTrap(trapMap, s, intersecting);
+        }
+        // Both handlers replace every crossed leaf by a YNode on s and add a leaf per new trapezoid
+        recorded.end(crossed, crossed == 1 ? BuildRecorder.ONE : BuildRecorder.MANY, crossed + xNodes + created, created);
+    }
 
-            if (intersecting.size() == 1) {
-                handleOneIntersectingTrap(trapMap, s, intersecting, ss);
-            } else {
-                handleManyIntersectingTrap(trapMap, s, intersecting, ss);
-            }
+    //Removes s from a map whose search structure is ss. pRemoved and qRemoved tell whether an
+    //endpoint of s is used by no other segment, so its vertical extension disappears as well.
+    //The trapezoids above and below s, and those beyond a removed endpoint, are merged into the
+    //trapezoids between the segments bounding them. Each of their leaves is replaced by a small
+    //tree of XNodes over the new trapezoids covering it. The nodes that tested s or a removed
+    //endpoint stay in the search structure as plain splits. Costs O(k log k + depth) for the k
+    //trapezoids next to s
+    public static void deleteSegment(TrapezoidMap trapMap, SearchStructure ss, Segment s, boolean pRemoved, boolean qRemoved) {
+        List<Trapezoid> above = trapezoidsAlong(ss.trapezoidNextTo(s, true), s, true);
+        List<Trapezoid> below = trapezoidsAlong(ss.trapezoidNextTo(s, false), s, false);
+
+        // The merged region is bounded by the tops of upper and the bottoms of lower
+        List<Trapezoid> upper = new ArrayList<>();
+        List<Trapezoid> lower = new ArrayList<>();
+        if (pRemoved) {
+            // s was the only segment at p, so a single trapezoid lies left of its extension
+            Trapezoid leftOfP = above.get(0).lowerLeft;
+            upper.add(leftOfP);
+            lower.add(leftOfP);
+        }
+        upper.addAll(above);
+        lower.addAll(below);
+        if (qRemoved) {
+            Trapezoid rightOfQ = above.get(above.size() - 1).lowerRight;
+            upper.add(rightOfQ);
+            lower.add(rightOfQ);
+        }
+
+        Set<Trapezoid> removedSet = new LinkedHashSet<>(upper);
+        removedSet.addAll(lower);
+        List<Trapezoid> removed = new ArrayList<>(removedSet);
+
+        // Every vertex whose extension ended on s now extends across the region
+        Set<Vertex> wallSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Trapezoid old : removed) {
+            wallSet.add(old.leftp);
+            wallSet.add(old.rightp);
+        }
+        if (pRemoved) wallSet.remove(s.p);
+        if (qRemoved) wallSet.remove(s.q);
+        List<Vertex> walls = new ArrayList<>(wallSet);
+        Collections.sort(walls, new PQComparator());
+
+        List<Trapezoid> created = new ArrayList<>();
+        int u = 0;
+        int l = 0;
+        for (int i = 0; i + 1 < walls.size(); i++) {
+            Vertex left = walls.get(i);
+            while (!lexLess(left, upper.get(u).rightp)) u++;
+            while (!lexLess(left, lower.get(l).rightp)) l++;
+            Trapezoid merged = new Trapezoid(left, walls.get(i + 1), upper.get(u).top, lower.get(l).bottom, trapMap.nextTrapezoidNo());
+            labelFace(trapMap, merged, upper.get(u));
+            merged.node = Node.leaf(merged);
+            created.add(merged);
+        }
+
+        // Build every replacement before attaching any, so concurrent queries only see complete subtrees
+        Map<Trapezoid, Node> replacements = new HashMap<>();
+        coverByWalls(upper, created, replacements);
+        coverByWalls(lower, created, replacements);
+        for (Trapezoid old : removed) {
+            Node replacement = replacements.get(old);
+            if (replacement.key instanceof Trapezoid) {
+                // Covered by one merged trapezoid, whose leaf can't be a second node as well. A node
+                // testing the deleted s sends both sides to it, s only splits like its other nodes
+                Node leaf = replacement;
+                replacement = Node.yNode(s);
+                replacement.lChild = leaf;
+                replacement.rChild = leaf;
+            }
+            old.node.become(replacement);
+        }
+
+        removeTrapezoids(trapMap, removed);
+        trapMap.traps.addAll(created);
+        linkNeighbors(removed, created);
+    }
+
+    //The trapezoids directly above (or below) s from its left endpoint to its right one. Until s.q
+    //each of them ends at a vertex strictly above (below) s, as the exact predicates decide it, and
+    //the next one is its right neighbor on the side of s. Above s that neighbor continues the
+    //bottom, which puts it in the lower slot. Below s it is in the upper slot, unless it is the
+    //only neighbor because the vertex lies on the bottom
+    private static List<Trapezoid> trapezoidsAlong(Trapezoid first, Segment s, boolean above){
+        List<Trapezoid> along = new ArrayList<>();
+        Trapezoid t = first;
+        along.add(t);
+        while (t.rightp != s.q) {
+            t = above || t.upperRight == null ? t.lowerRight : t.upperRight;
+            along.add(t);
+        }
+        return along;
+    }
+
+    //Maps each trapezoid of chain, ordered from left to right, to a search tree over the created
+    //trapezoids that cover it
+    private static void coverByWalls(List<Trapezoid> chain, List<Trapezoid> created, Map<Trapezoid, Node> replacements){
+        int first = 0;
+        for (Trapezoid old : chain) {
+            while (!lexLess(old.leftp, created.get(first).rightp)) first++;
+            int last = first;
+            while (last + 1 < created.size() && lexLess(created.get(last).rightp, old.rightp)) last++;
+            replacements.putIfAbsent(old, splitByWalls(created, first, last));
         }
+    }
 
-//        for(Trapezoid trap: trapMap.traps){
-//            Segment top = trap.top;
-//            HalfEdge e1 = top.halfEdges[0];
-//            HalfEdge e2 = top.halfEdges[1];
-//            if(e2.origin.x > e2.next.origin.x){
-//                trap.containingFace = e2.incidentFace;
-//            }
-//            else{
-//                trap.containingFace = e1.incidentFace;
-//            }
-//        }
+    //Balanced tree of XNodes at the walls between created[first..last], with their leaves below it
+    private static Node splitByWalls(List<Trapezoid> created, int first, int last){
+        if (first == last) return created.get(first).node;
+        int mid = (first + last + 1) / 2;
+        Node split = Node.xNode(created.get(mid).leftp);
+        split.lChild = splitByWalls(created, first, mid - 1);
+        split.rChild = splitByWalls(created, mid, last);
+        return split;
+    }
 
-        return trapMap;
+    private static boolean lexLess(Vertex a, Vertex b){
+        return a != b && (a.x < b.x || (a.x == b.x && a.y < b.y));
     }
 
-    private static Map<String, Segment> getBoundingBox(List<Segment> segments, Face unbounded) {
+    private static Map<Integer, Segment> getBoundingBox(List<Segment> segments, Face unbounded) {
+        BuildRecorder.Phase phase = BuildRecorder.RECORDER.phase(BuildRecorder.BOUNDING_BOX);
         float bottom = Float.MAX_VALUE;
         float left = Float.MAX_VALUE;
         float right = Float.MIN_VALUE;
@@ -85,31 +292,33 @@ public class TrapMapBuilder {
 
         //The four vertices of R, starting at the upper left corner,
         // are named counterclockwise as c1, c2, c3, and c4.
-        Vertex tl = new Vertex(left - 1.0f, top + 1.0f, "c1");
-        Vertex bl = new Vertex(left - 1.0f, bottom - 1.0f, "c2");
-        Vertex br = new Vertex(right + 1.0f, bottom - 1.0f, "c3");
-        Vertex tr = new Vertex(right + 1.0f, top + 1.0f, "c4");
+        Vertex tl = new Vertex(left - 1.0f, top + 1.0f, 1, true);
+        Vertex bl = new Vertex(left - 1.0f, bottom - 1.0f, 2, true);
+        Vertex br = new Vertex(right + 1.0f, bottom - 1.0f, 3, true);
+        Vertex tr = new Vertex(right + 1.0f, top + 1.0f, 4, true);
 
         //The left, right, top, and bottom sides of the bounding box R for
         // all the segments are named L, R, T, and B, respectively.
-        Segment l = new Segment(bl, tl, "L");
-        Segment r = new Segment(br, tr, "R");
-        Segment t = new Segment(tr, tl, "T");
-        Segment b = new Segment(br, bl, "B");
-
-        Map<String, Segment> R = new HashMap<>();
-        R.put(l.name, l);
-        R.put(r.name, r);
-        R.put(t.name, t);
-        R.put(b.name, b);
-
+        Segment l = new Segment(bl, tl, Segment.L);
+        Segment r = new Segment(br, tr, Segment.R);
+        Segment t = new Segment(tr, tl, Segment.T);
+        Segment b = new Segment(br, bl, Segment.B);
+
+        Map<Integer, Segment> R = new HashMap<>();
+        R.put(l.no, l);
+        R.put(r.no, r);
+        R.put(t.no, t);
+        R.put(b.no, b);
+
+        phase.end(segments.size());
         return R;
     }
 
-    //transforms halfEdges into segments
+    //transforms halfEdges into segments. Twins are paired through a hash set so this is O(E)
     private static List<Segment> getSegments(List<HalfEdge> halfEdges) {
-        List<HalfEdge> accountedFor = new ArrayList<>();
-        List<Segment> segments = new ArrayList<>();
+        BuildRecorder.Phase phase = BuildRecorder.RECORDER.phase(BuildRecorder.SEGMENTS);
+        Set<HalfEdge> accountedFor = new HashSet<>(halfEdges.size() * 2);
+        List<Segment> segments = new ArrayList<>(halfEdges.size() / 2);
         int segmentCount = 0;
         for (HalfEdge h : halfEdges) {
             if (!accountedFor.contains(h)) {
@@ -121,6 +330,7 @@ public class TrapMapBuilder {
                 h.twin.segment = s;
             }
         }
+        phase.end(segments.size());
         return segments;
     }
 
@@ -137,351 +347,209 @@ public class TrapMapBuilder {
 //        return false;
 //    }
 
-    private static void handleOneIntersectingTrap(TrapezoidMap trapMap, Segment s, List<Trapezoid> intersecting, SearchStructure ss) {
+    //Both handlers return the number of trapezoids they created
+    private static int handleOneIntersectingTrap(TrapezoidMap trapMap, Segment s, List<Trapezoid> intersecting) {
         Trapezoid old = intersecting.get(0);
-        LeafNode toReplace = ss.segmentQueryNode(s, s.p, true);
-        List<Node> parentsOfReplace = toReplace.parents;
+        Node toReplace = old.node;
+        List<Trapezoid> created = new ArrayList<>();
         Node subRoot;
 
         if (old.leftp == s.p) {
             if (old.rightp == s.q) {
                 // Both endpoints of s are already in T
                 // Therefore only create two new trapezoids
-                Trapezoid A; // Above s
-                Trapezoid B; // Below s
-
-                Vertex[] left = setLeftRightp(old.leftp, s.p);
-                Vertex[] right = setLeftRightp(old.rightp, s.q);
-
-                Vertex leftp_A = left[0];
-                Vertex leftp_B = left[1];
-                Vertex rightp_A = right[0];
-                Vertex rightp_B = right[1];
-
-                A = new Trapezoid(leftp_A, rightp_A, old.top, s);
-                B = new Trapezoid(leftp_B, rightp_B, s, old.bottom);
-
-                // Set left neighbors
-                setLeftNeighbors_spOnVert(A, B, old, s);
-                // Set right neighbors
-                setRightNeighbors_sqOnVert(A, B, old, s);
-
-                // Set left neighbors of old traps
-                setNeighborsForOldTraps_sqOnVert(A, B, old);
-
-                //Set right neighbors of old traps
-                setNeighborsForOldTraps_spOnVert(A, B, old);
-
-                trapMap.traps.add(A);
-                trapMap.traps.add(B);
+                Trapezoid A = new Trapezoid(s.p, s.q, old.top, s, trapMap.nextTrapezoidNo()); // Above s
+                Trapezoid B = new Trapezoid(s.p, s.q, s, old.bottom, trapMap.nextTrapezoidNo()); // Below s
+                created.add(A);
+                created.add(B);
 
                 //Add new nodes to the search structure
-                subRoot = new YNode(s);
-                subRoot.parents.addAll(parentsOfReplace);
-                subRoot.lChild = new LeafNode(A);
-                A.node = (LeafNode) subRoot.lChild;
-                subRoot.lChild.parents.add(subRoot);
-                subRoot.rChild = new LeafNode(B);
-                B.node = (LeafNode) subRoot.rChild;
-                subRoot.rChild.parents.add(subRoot);
+                subRoot = Node.yNode(s);
+                subRoot.lChild = Node.leaf(A);
+                A.node = subRoot.lChild;
+                subRoot.rChild = Node.leaf(B);
+                B.node = subRoot.rChild;
 
             } else {
                 // Left endpoint of s lies is already in T but not right endpoint
                 // Therefore create three trapezoids
-                Trapezoid A; // Above s
-                Trapezoid B; // Below s
-                Trapezoid C; // Right of s
-
-                Vertex[] left = setLeftRightp(old.leftp, s.p);
-                Vertex leftp_A = left[0];
-                Vertex leftp_B = left[1];
-                Vertex leftp_C = s.q;
-                Vertex rightp_A = s.q;
-                Vertex rightp_B = s.q;
-                Vertex rightp_C = old.rightp;
-
-                A = new Trapezoid(leftp_A, rightp_A, old.top, s);
-                B = new Trapezoid(leftp_B, rightp_B, s, old.bottom);
-                C = new Trapezoid(leftp_C, rightp_C, old.top, old.bottom);
-
-                // Add left neighbors
-                setLeftNeighbors_spOnVert(A, B, old, s);
-                C.leftNeighbors.add(B);
-                C.leftNeighbors.add(A);
-
-                // Add right neighbors
-                A.rightNeighbors.add(C);
-                B.rightNeighbors.add(C);
-                C.rightNeighbors.addAll(old.rightNeighbors);
-
-                // Set left neighbors of old traps
-                setNeighborsForOldTraps_sqNOTonVert(C, old);
-
-                // Set right neighbors of old traps
-                setNeighborsForOldTraps_spOnVert(A, B, old);
-
-                trapMap.traps.add(A);
-                trapMap.traps.add(B);
-                trapMap.traps.add(C);
+                Trapezoid A = new Trapezoid(s.p, s.q, old.top, s, trapMap.nextTrapezoidNo()); // Above s
+                Trapezoid B = new Trapezoid(s.p, s.q, s, old.bottom, trapMap.nextTrapezoidNo()); // Below s
+                Trapezoid C = new Trapezoid(s.q, old.rightp, old.top, old.bottom, trapMap.nextTrapezoidNo()); // Right of s
+                created.add(A);
+                created.add(B);
+                created.add(C);
 
                 // Add new nodes to the search structure
-                subRoot = new XNode(s.q);
-                subRoot.parents.addAll(parentsOfReplace);
-                subRoot.rChild = new LeafNode(C);
-                C.node = (LeafNode) subRoot.rChild;
-                subRoot.rChild.parents.add(subRoot);
+                subRoot = Node.xNode(s.q);
+                subRoot.rChild = Node.leaf(C);
+                C.node = subRoot.rChild;
 
-                Node si = new YNode(s);
-                si.lChild = new LeafNode(A);
-                si.lChild.parents.add(si);
-                A.node = (LeafNode) si.lChild;
+                Node si = Node.yNode(s);
+                si.lChild = Node.leaf(A);
+                A.node = si.lChild;
 
-                si.rChild = new LeafNode(B);
-                B.node = (LeafNode) si.rChild;
-                si.rChild.parents.add(si);
+                si.rChild = Node.leaf(B);
+                B.node = si.rChild;
 
                 subRoot.lChild = si;
-                si.parents.add(subRoot);
 
             }
         } else {
             if (old.rightp == s.q) {
                 // right endpoint of s is already in T but not left endpoint
                 // Therefore create three trapezoids
-                Trapezoid A; // Above s
-                Trapezoid B; // Below s
-                Trapezoid C; // Left of s
-
-                Vertex[] right = setLeftRightp(old.rightp, s.q);
-
-                Vertex leftp_A = s.p;
-                Vertex leftp_B = s.p;
-                Vertex leftp_C = old.leftp;
-                Vertex rightp_A = right[0];
-                Vertex rightp_B = right[1];
-                Vertex rightp_C = s.q;
-
-                A = new Trapezoid(leftp_A, rightp_A, old.top, s);
-                B = new Trapezoid(leftp_B, rightp_B, s, old.bottom);
-                C = new Trapezoid(leftp_C, rightp_C, old.top, old.bottom);
-
-                // Add left neighbors
-                C.leftNeighbors.addAll(old.leftNeighbors);
-                A.leftNeighbors.add(C);
-                B.leftNeighbors.add(C);
-
-                // Add right neighbors
-                setRightNeighbors_sqOnVert(A, B, old, s);
-                C.rightNeighbors.add(B);
-                C.rightNeighbors.add(A);
-
-                // Set left neighbors of old traps
-                setNeighborsForOldTraps_sqOnVert(A, B, old);
-
-                // Set right neighbors of old traps
-                setNeighborsForOldTraps_spNOTonVert(C, old);
-
-                trapMap.traps.add(A);
-                trapMap.traps.add(B);
-                trapMap.traps.add(C);
-
-                subRoot = new XNode(s.p);
-                subRoot.parents.addAll(parentsOfReplace);
-                subRoot.lChild = new LeafNode(C);
-                C.node = (LeafNode) subRoot.lChild;
-                subRoot.lChild.parents.add(subRoot);
-
-                Node si = new YNode(s);
-                si.lChild = new LeafNode(A);
-                A.node = (LeafNode) si.lChild;
-                si.lChild.parents.add(si);
-
-                si.rChild = new LeafNode(B);
-                B.node = (LeafNode) si.rChild;
-                si.rChild.parents.add(si);
+                Trapezoid A = new Trapezoid(s.p, s.q, old.top, s, trapMap.nextTrapezoidNo()); // Above s
+                Trapezoid B = new Trapezoid(s.p, s.q, s, old.bottom, trapMap.nextTrapezoidNo()); // Below s
+                Trapezoid C = new Trapezoid(old.leftp, s.p, old.top, old.bottom, trapMap.nextTrapezoidNo()); // Left of s
+                created.add(A);
+                created.add(B);
+                created.add(C);
+
+                subRoot = Node.xNode(s.p);
+                subRoot.lChild = Node.leaf(C);
+                C.node = subRoot.lChild;
+
+                Node si = Node.yNode(s);
+                si.lChild = Node.leaf(A);
+                A.node = si.lChild;
+
+                si.rChild = Node.leaf(B);
+                B.node = si.rChild;
 
                 subRoot.rChild = si;
-                si.parents.add(subRoot);
             } else {
                 // s is completely contained in the trapezoid
                 // Therefore create four new trapezoids
 
-                Trapezoid A = new Trapezoid(old.leftp, s.p, old.top, old.bottom); // Left of s
-                Trapezoid B = new Trapezoid(s.p, s.q, old.top, s); // Above s
-                Trapezoid C = new Trapezoid(s.p, s.q, s, old.bottom); // Below s
-                Trapezoid D = new Trapezoid(s.q, old.rightp, old.top, old.bottom); // Right of s
-
-                trapMap.traps.add(A);
-                trapMap.traps.add(B);
-                trapMap.traps.add(C);
-                trapMap.traps.add(D);
-
-                // Add left neighbors
-                A.leftNeighbors.addAll(old.leftNeighbors);
-                B.leftNeighbors.add(A);
-                C.leftNeighbors.add(A);
-                D.leftNeighbors.add(C);
-                D.leftNeighbors.add(B);
-
-                // Add right neighbors
-                A.rightNeighbors.add(C);
-                A.rightNeighbors.add(B);
-                B.rightNeighbors.add(D);
-                C.rightNeighbors.add(D);
-                D.rightNeighbors.addAll(old.rightNeighbors);
-
-                // Set left neighbors of old traps
-                setNeighborsForOldTraps_sqNOTonVert(D, old);
-
-                // Set right neighbors of old traps
-                setNeighborsForOldTraps_spNOTonVert(A, old);
-
-                Node si = new YNode(s);
-                si.lChild = new LeafNode(B);
-                B.node = (LeafNode) si.lChild;
-                si.lChild.parents.add(si);
-
-                si.rChild = new LeafNode(C);
-                C.node = (LeafNode) si.rChild;
-                si.rChild.parents.add(si);
-
-                Node qi = new XNode(s.q);
-                qi.rChild = new LeafNode(D);
-                D.node = (LeafNode) qi.rChild;
-                qi.rChild.parents.add(qi);
+                Trapezoid A = new Trapezoid(old.leftp, s.p, old.top, old.bottom, trapMap.nextTrapezoidNo()); // Left of s
+                Trapezoid B = new Trapezoid(s.p, s.q, old.top, s, trapMap.nextTrapezoidNo()); // Above s
+                Trapezoid C = new Trapezoid(s.p, s.q, s, old.bottom, trapMap.nextTrapezoidNo()); // Below s
+                Trapezoid D = new Trapezoid(s.q, old.rightp, old.top, old.bottom, trapMap.nextTrapezoidNo()); // Right of s
+                created.add(A);
+                created.add(B);
+                created.add(C);
+                created.add(D);
+
+                Node si = Node.yNode(s);
+                si.lChild = Node.leaf(B);
+                B.node = si.lChild;
+
+                si.rChild = Node.leaf(C);
+                C.node = si.rChild;
+
+                Node qi = Node.xNode(s.q);
+                qi.rChild = Node.leaf(D);
+                D.node = qi.rChild;
                 qi.lChild = si;
-                si.parents.add(qi);
 
-                subRoot = new XNode(s.p);
-                subRoot.parents.addAll(parentsOfReplace);
+                subRoot = Node.xNode(s.p);
 
-                subRoot.lChild = new LeafNode(A);
-                A.node = (LeafNode) subRoot.lChild;
-                subRoot.lChild.parents.add(subRoot);
+                subRoot.lChild = Node.leaf(A);
+                A.node = subRoot.lChild;
                 subRoot.rChild = qi;
-                qi.parents.add(subRoot);
             }
         }
-        replaceNode(parentsOfReplace, toReplace, subRoot, ss);
+        for (Trapezoid c : created) {
+            labelFace(trapMap, c, old);
+        }
+        toReplace.become(subRoot);
+        trapMap.traps.addAll(created);
+        linkNeighbors(intersecting, created);
+        return created.size();
     }
 
-    private static void handleManyIntersectingTrap(TrapezoidMap trapMap, Segment s, List<Trapezoid> intersecting, SearchStructure ss) {
+    private static int handleManyIntersectingTrap(TrapezoidMap trapMap, Segment s, List<Trapezoid> intersecting) {
         Trapezoid delta0 = intersecting.get(0);
         Trapezoid deltak = intersecting.get(intersecting.size() - 1);
+        List<Trapezoid> created = new ArrayList<>();
 
-        Map<Trapezoid, List<Trapezoid>> newToOld = new HashMap<>();
+        // Build the subtrees replacing each intersected leaf. They are only attached to the search
+        // structure once they are complete, so concurrent queries never see a half built subtree
 
         // Replace the leftmost node
-        LeafNode toReplaceL = ss.segmentQueryNode(s, s.p, true);
-        List<Node> parentsOfReplaceL = toReplaceL.parents;
-        YNode subRootL;
-        Node toAttach;
-        Trapezoid leftMost = null;
+        Node toReplaceL = delta0.node;
+        Node subRootL;
+        Node toAttachL;
         if(s.p == delta0.leftp){
-            subRootL = new YNode(s);
-            subRootL.parents.addAll(parentsOfReplaceL);
-            toAttach = subRootL;
+            subRootL = Node.yNode(s);
+            toAttachL = subRootL;
         }
         else{
-            leftMost = new Trapezoid(delta0.leftp, s.p, delta0.top, delta0.bottom);
-            trapMap.traps.add(leftMost);
-            Node pi = new XNode(s.p);
-            pi.parents.addAll(parentsOfReplaceL);
-            LeafNode leftMostLeaf = new LeafNode(leftMost);
+            Trapezoid leftMost = new Trapezoid(delta0.leftp, s.p, delta0.top, delta0.bottom, trapMap.nextTrapezoidNo());
+            created.add(leftMost);
+            labelFace(trapMap, leftMost, delta0);
+            Node pi = Node.xNode(s.p);
+            Node leftMostLeaf = Node.leaf(leftMost);
             leftMost.node = leftMostLeaf;
-            leftMostLeaf.parents.add(pi);
             pi.lChild = leftMostLeaf;
 
-            subRootL = new YNode(s);
+            subRootL = Node.yNode(s);
             pi.rChild = subRootL;
-            subRootL.parents.add(pi);
-            toAttach = pi;
+            toAttachL = pi;
         }
-        replaceNode(parentsOfReplaceL, toReplaceL, toAttach, ss);
 
 
         // Replace the rightmost node
-        LeafNode toReplaceR = ss.segmentQueryNode(s, s.q, false);
-        List<Node> parentsOfReplaceR = toReplaceR.parents;
+        Node toReplaceR = deltak.node;
         Node subRootR;
-        Trapezoid rightMost = null;
+        Node toAttachR;
         if(s.q == deltak.rightp){
-            subRootR = new YNode(s);
-            subRootR.parents.addAll(parentsOfReplaceR);
-            toAttach = subRootR;
+            subRootR = Node.yNode(s);
+            toAttachR = subRootR;
         }
         else{
-            rightMost = new Trapezoid(s.q, deltak.rightp, deltak.top, deltak.bottom);
-            trapMap.traps.add(rightMost);
-            Node qi = new XNode(s.q);
-            qi.parents.addAll(parentsOfReplaceR);
-            LeafNode rightMostLeaf = new LeafNode(rightMost);
+            Trapezoid rightMost = new Trapezoid(s.q, deltak.rightp, deltak.top, deltak.bottom, trapMap.nextTrapezoidNo());
+            created.add(rightMost);
+            labelFace(trapMap, rightMost, deltak);
+            Node qi = Node.xNode(s.q);
+            Node rightMostLeaf = Node.leaf(rightMost);
             rightMost.node = rightMostLeaf;
-            rightMostLeaf.parents.add(qi);
             qi.rChild = rightMostLeaf;
 
-            subRootR = new YNode(s);
+            subRootR = Node.yNode(s);
             qi.lChild = subRootR;
-            subRootR.parents.add(qi);
 
-            toAttach = qi;
+            toAttachR = qi;
         }
-        replaceNode(parentsOfReplaceR, toReplaceR, toAttach, ss);
 
         // Replace all inbetween nodes with YNodes
-        Map<Trapezoid, YNode> newSegmentNodes = new HashMap<>();
+        Map<Trapezoid, Node> newSegmentNodes = new HashMap<>();
         for(Trapezoid replace: intersecting.subList(1, intersecting.size() - 1)){
-            YNode segmentNode = new YNode(s);
-            Node replacing  = replace.node;
-            List<Node> replacingParents = replacing.parents;
-
-            replaceNode(replacingParents, replacing, segmentNode, ss);
-            newSegmentNodes.put(replace, segmentNode);
+            newSegmentNodes.put(replace, Node.yNode(s));
         }
 
 
-        List<Trapezoid> topTraps = new ArrayList<>();
         // Find all top trapezoids
         int intersectingIndex = 0;
         List<Trapezoid> replacing = findNewUpperTraps(intersectingIndex, intersecting, s);
-        Vertex rightp = replacing.get(replacing.size() - 1).rightp;
-        Trapezoid newTrap = new Trapezoid(s.p, rightp, delta0.top, s);
-        List l = new ArrayList<>();
-        l.add(delta0);
-        l.add(replacing.get(replacing.size() - 1));
-        newToOld.put(newTrap, l);
-        trapMap.traps.add(newTrap);
-        topTraps.add(newTrap);
-        LeafNode newLeaf = new LeafNode(newTrap);
+        Trapezoid newTrap = new Trapezoid(s.p, mergedRightp(replacing, deltak, s), delta0.top, s, trapMap.nextTrapezoidNo());
+        created.add(newTrap);
+        labelFace(trapMap, newTrap, replacing.get(0));
+        Node newLeaf = Node.leaf(newTrap);
         newTrap.node = newLeaf;
 
         int replaceIndex = 0;
         intersectingIndex++;
 
         boolean firstLoop = true;
-        while(replacing.get(replaceIndex) != intersecting.get(intersecting.size() - 1)){
+        while(replacing.get(replaceIndex) != deltak){
             Trapezoid t = null;
             if(firstLoop){
                 subRootL.lChild = newLeaf;
-                newLeaf.parents.add(subRootL);
             }
             else{
                 t = replacing.get(replaceIndex);
-                YNode setChild = newSegmentNodes.get(t);
+                Node setChild = newSegmentNodes.get(t);
                 setChild.lChild = newLeaf;
-                newLeaf.parents.add(setChild);
             }
             replaceIndex++;
             if(replaceIndex == replacing.size()){
                 replacing = findNewUpperTraps(intersectingIndex, intersecting, s);
-                rightp = replacing.get(replacing.size() - 1).rightp;
-                newTrap = new Trapezoid(replacing.get(0).leftp, rightp, replacing.get(0).top, s);
-                l.add(replacing.get(0));
-                l.add(replacing.get(replacing.size() - 1));
-                newToOld.put(newTrap, l);
-                trapMap.traps.add(newTrap);
-                topTraps.add(newTrap);
-                newLeaf = new LeafNode(newTrap);
+                newTrap = new Trapezoid(replacing.get(0).leftp, mergedRightp(replacing, deltak, s), replacing.get(0).top, s, trapMap.nextTrapezoidNo());
+                created.add(newTrap);
+                labelFace(trapMap, newTrap, replacing.get(0));
+                newLeaf = Node.leaf(newTrap);
                 newTrap.node = newLeaf;
                 replaceIndex = 0;
             }
@@ -490,53 +558,37 @@ public class TrapMapBuilder {
         }
 
         subRootR.lChild = newLeaf;
-        newLeaf.parents.add(subRootR);
 
 
-        List<Trapezoid> bottomTraps = new ArrayList<>();
         // Find all bottom trapezoids
         intersectingIndex = 0;
         replacing = findNewLowerTraps(intersectingIndex, intersecting, s);
-        rightp = replacing.get(replacing.size() - 1).rightp;
-        newTrap = new Trapezoid(s.p, rightp, s, delta0.bottom);
-
-        l = new ArrayList<>();
-        l.add(delta0);
-        l.add(replacing.get(replacing.size() - 1));
-        newToOld.put(newTrap, l);
-
-        bottomTraps.add(newTrap);
-        trapMap.traps.add(newTrap);
-        newLeaf = new LeafNode(newTrap);
+        newTrap = new Trapezoid(s.p, mergedRightp(replacing, deltak, s), s, delta0.bottom, trapMap.nextTrapezoidNo());
+        created.add(newTrap);
+        labelFace(trapMap, newTrap, replacing.get(0));
+        newLeaf = Node.leaf(newTrap);
         newTrap.node = newLeaf;
 
         replaceIndex = 0;
         intersectingIndex++;
         firstLoop = true;
-        while(replacing.get(replaceIndex) != intersecting.get(intersecting.size() - 1)){
+        while(replacing.get(replaceIndex) != deltak){
             Trapezoid t = null;
             if(firstLoop){
                 subRootL.rChild = newLeaf;
-                newLeaf.parents.add(subRootL);
             }
             else{
                 t = replacing.get(replaceIndex);
-                YNode setChild = newSegmentNodes.get(t);
+                Node setChild = newSegmentNodes.get(t);
                 setChild.rChild = newLeaf;
-                newLeaf.parents.add(setChild);
             }
             replaceIndex++;
             if(replaceIndex == replacing.size()){
                 replacing = findNewLowerTraps(intersectingIndex, intersecting, s);
-                rightp = replacing.get(replacing.size() - 1).rightp;
-                newTrap = new Trapezoid(replacing.get(0).leftp, rightp,s, replacing.get(0).bottom);
-                l = new ArrayList<>();
-                l.add(replacing.get(0));
-                l.add(replacing.get(replacing.size() - 1));
-                newToOld.put(newTrap, l);
-                trapMap.traps.add(newTrap);
-                bottomTraps.add(newTrap);
-                newLeaf = new LeafNode(newTrap);
+                newTrap = new Trapezoid(replacing.get(0).leftp, mergedRightp(replacing, deltak, s), s, replacing.get(0).bottom, trapMap.nextTrapezoidNo());
+                created.add(newTrap);
+                labelFace(trapMap, newTrap, replacing.get(0));
+                newLeaf = Node.leaf(newTrap);
                 newTrap.node = newLeaf;
                 replaceIndex = 0;
             }
@@ -545,383 +597,150 @@ public class TrapMapBuilder {
         }
 
         subRootR.rChild = newLeaf;
-        newLeaf.parents.add(subRootR);
 
-        // Add neighbors
-        if(s.p == delta0.leftp){
-            setLeftNeighbors_spOnVert(topTraps.get(0), bottomTraps.get(0),delta0, s);
-            setNeighborsForOldTraps_spOnVert(topTraps.get(0), bottomTraps.get(0),delta0);
+        // Attach the finished subtrees
+        toReplaceL.become(toAttachL);
+        toReplaceR.become(toAttachR);
+        for(Trapezoid replace: intersecting.subList(1, intersecting.size() - 1)){
+            replace.node.become(newSegmentNodes.get(replace));
         }
-        else{
-            leftMost.leftNeighbors.addAll(delta0.leftNeighbors);
 
-            leftMost.rightNeighbors.add(bottomTraps.get(0));
-            leftMost.rightNeighbors.add(topTraps.get(0));
-            topTraps.get(0).leftNeighbors.add(leftMost);
-            bottomTraps.get(0).leftNeighbors.add(leftMost);
-            setNeighborsForOldTraps_spNOTonVert(leftMost, delta0);
-        }
+        trapMap.traps.addAll(created);
+        linkNeighbors(intersecting, created);
+        return created.size();
+    }
 
-        if(s.q == deltak.rightp){
-            setRightNeighbors_sqOnVert(topTraps.get(topTraps.size() - 1), bottomTraps.get(bottomTraps.size() - 1),deltak, s);
-            setNeighborsForOldTraps_sqOnVert(topTraps.get(topTraps.size() - 1), bottomTraps.get(bottomTraps.size() - 1), deltak);
+    //Labels t with the face it lies in: the face below its top segment, or the face above its
+    //bottom segment if the top is not a DCEL edge. Between two segments that are not DCEL edges,
+    //such as the bounding box or inserted segments, t keeps the face of the trapezoid it came from.
+    //t is listed under its face by trapMap, which drops it again in removeTrapezoids
+    private static void labelFace(TrapezoidMap trapMap, Trapezoid t, Trapezoid from){
+        Face f;
+        if (t.top.halfEdges[0] != null) {
+            // Faces lie left of their half edges, so the face below a segment is on the half edge from q to p
+            f = (t.top.halfEdges[0].origin == t.top.q ? t.top.halfEdges[0] : t.top.halfEdges[1]).incidentFace;
         }
-        else{
-            rightMost.rightNeighbors.addAll(deltak.rightNeighbors);
-
-            rightMost.leftNeighbors.add(bottomTraps.get(bottomTraps.size() - 1));
-            rightMost.leftNeighbors.add(topTraps.get(topTraps.size() - 1));
-
-            topTraps.get(topTraps.size() - 1).rightNeighbors.add(rightMost);
-            bottomTraps.get(bottomTraps.size() - 1).rightNeighbors.add(rightMost);
-            setNeighborsForOldTraps_sqNOTonVert(rightMost, deltak);
-        }
-
-        Trapezoid cur;
-        Trapezoid next;
-        // Link the trapezoids together
-        for(int i = 0; i < topTraps.size() - 1; i++){
-            cur = topTraps.get(i);
-            next = topTraps.get(i + 1);
-            List<Trapezoid> oldCur = newToOld.get(cur);
-            if(oldCur.get(1).rightNeighbors.size() == 2){
-                cur.rightNeighbors.add(next);
-                cur.rightNeighbors.add(oldCur.get(1).rightNeighbors.get(1));
-            }else{
-                cur.rightNeighbors.add(next);
-            }
-
-            List<Trapezoid> oldNext = newToOld.get(next);
-            if(oldNext.get(0).leftNeighbors.size() == 2){
-                next.leftNeighbors.add(cur);
-                next.leftNeighbors.add(oldNext.get(0).leftNeighbors.get(1));
-                oldNext.get(0).leftNeighbors.get(0).rightNeighbors.set(0, next);
-            }else{
-                next.leftNeighbors.add(cur);
-            }
+        else if (t.bottom.halfEdges[0] != null) {
+            f = (t.bottom.halfEdges[0].origin == t.bottom.p ? t.bottom.halfEdges[0] : t.bottom.halfEdges[1]).incidentFace;
         }
-
-        // Link the trapezoids together
-        for(int i = 0; i < bottomTraps.size() - 1; i++){
-            cur = bottomTraps.get(i);
-            next = bottomTraps.get(i + 1);
-            List<Trapezoid> oldCur = newToOld.get(cur);
-            if(oldCur.get(1).rightNeighbors.size() == 2){
-                cur.rightNeighbors.add(oldCur.get(1).rightNeighbors.get(0));
-                cur.rightNeighbors.add(next);
-            }else{
-                cur.rightNeighbors.add(next);
-            }
-
-            List<Trapezoid> oldNext = newToOld.get(next);
-            if(oldNext.get(0).leftNeighbors.size() == 2){
-                next.leftNeighbors.add(oldNext.get(0).leftNeighbors.get(0));
-                next.leftNeighbors.add(cur);
-                oldNext.get(0).leftNeighbors.get(0).rightNeighbors.set(0, next);
-
-            }else{
-                next.leftNeighbors.add(cur);
-            }
+        else {
+            f = from.containingFace;
         }
-
+        t.containingFace = f;
+        trapMap.addToFace(t);
     }
 
-
-    private static Vertex[] setLeftRightp(Vertex old, Vertex sEndpoint) {
-        Vertex A;
-        Vertex B;
-        if (old == sEndpoint) {
-            A = B = sEndpoint;
-        } else if (old.y > sEndpoint.y) {
-            A = old;
-            B = sEndpoint;
-        } else {
-            A = sEndpoint;
-            B = old;
+    private static void removeTrapezoids(TrapezoidMap trapMap, List<Trapezoid> removed){
+        trapMap.traps.removeAll(removed);
+        for (Trapezoid old : removed) {
+            trapMap.removeFromFace(old);
         }
-        Vertex AB[] = {A, B};
-        return AB;
     }
 
-    private static boolean incident(Vertex v, Segment s) {
-        HalfEdge start = v.incidentEdge;
-        HalfEdge next = start;
-        do {
-            next = next.next;
-            if (next.segment == s) {
-                return true;
-            }
-        } while (start != next);
-        return false;
+    //The last merged trapezoid ends at s.q, which may lie inside deltak
+    private static Vertex mergedRightp(List<Trapezoid> merged, Trapezoid deltak, Segment s){
+        Trapezoid last = merged.get(merged.size() - 1);
+        return last == deltak ? s.q : last.rightp;
     }
 
-    private static void setLeftNeighbors_spOnVert(Trapezoid A, Trapezoid B, Trapezoid old, Segment s) {
-        if (old.leftp == s.p) {
-            if (old.leftNeighbors.size() == 1) {
-                Trapezoid oln = old.leftNeighbors.get(0);
-                if (!incident(s.p, old.top)) {
-                    A.leftNeighbors.add(oln);
-                }
-                if (!incident(s.p, old.bottom)) {
-                    B.leftNeighbors.add(oln);
-                }
-            } else if (old.leftNeighbors.size() == 2) {
-                Trapezoid olnb = old.leftNeighbors.get(0);
-                Trapezoid olnt = old.leftNeighbors.get(1);
-                A.leftNeighbors.add(olnt);
-                B.leftNeighbors.add(olnb);
-            }
-            return;
-        }
-        throw new Error("FUCK");
-//        else if(old.leftp.y > s.p.y){
-//            if(old.leftNeighbors.size() == 1){
-//                Trapezoid oln = old.leftNeighbors.get(0);
-//                A.leftNeighbors.add(oln);
-//                B.leftNeighbors.add(oln);
-//            }
-//            else if(old.leftNeighbors.size() == 2){
-//                Trapezoid olnb = old.leftNeighbors.get(0);
-//                Trapezoid olnt = old.leftNeighbors.get(1);
-//
-//                A.leftNeighbors.add(olnb);
-//                A.leftNeighbors.add(olnt);
-//                B.leftNeighbors.add(olnb);
-//            }
-//        }
-//        else{
-//            if(old.leftNeighbors.size() == 1){
-//                Trapezoid oln = old.leftNeighbors.get(0);
-//                A.leftNeighbors.add(oln);
-//                B.leftNeighbors.add(oln);
-//            }
-//            else if(old.leftNeighbors.size() == 2){
-//                Trapezoid olnb = old.leftNeighbors.get(0);
-//                Trapezoid olnt = old.leftNeighbors.get(1);
-//
-//               A.leftNeighbors.add(olnt);
-//               B.leftNeighbors.add(olnb);
-//               B.leftNeighbors.add(olnt);
-//            }
-//        }
-    }
-
-    private static void setRightNeighbors_sqOnVert(Trapezoid A, Trapezoid B, Trapezoid old, Segment s) {
-        //Should always occur
-        if (old.rightp == s.q) {
-            if (old.rightNeighbors.size() == 1) {
-                Trapezoid orn = old.rightNeighbors.get(0);
-                if (!incident(s.q, old.top)) {
-                    A.rightNeighbors.add(orn);
-                }
-                if (!incident(s.p, old.bottom)) {
-                    B.rightNeighbors.add(orn);
-                }
-            } else if (old.rightNeighbors.size() == 2) {
-                Trapezoid olnb = old.rightNeighbors.get(0);
-                Trapezoid olnt = old.rightNeighbors.get(1);
-                A.rightNeighbors.add(olnt);
-                B.rightNeighbors.add(olnb);
-            }
-            return;
-        }
-        throw new Error("FUCK");
-//        else if(old.rightp.y > s.q.y){
-//            if(old.rightNeighbors.size() == 1){
-//                Trapezoid orn = old.rightNeighbors.get(0);
-//                A.rightNeighbors.add(orn);
-//                B.rightNeighbors.add(orn);
-//            }
-//            else if(old.rightNeighbors.size() == 2){
-//                Trapezoid ornb = old.rightNeighbors.get(0);
-//                Trapezoid ornt = old.rightNeighbors.get(1);
-//
-//                A.rightNeighbors.add(ornb);
-//                A.rightNeighbors.add(ornt);
-//                B.rightNeighbors.add(ornb);
-//            }
-//        }
-//        else{
-//            if(old.rightNeighbors.size() == 1){
-//                Trapezoid orn = old.rightNeighbors.get(0);
-//                A.rightNeighbors.add(orn);
-//                B.rightNeighbors.add(orn);
-//            }
-//            else if(old.rightNeighbors.size() == 2){
-//                Trapezoid ornb = old.rightNeighbors.get(0);
-//                Trapezoid ornt = old.rightNeighbors.get(1);
-//
-//                A.rightNeighbors.add(ornt);
-//                B.rightNeighbors.add(ornb);
-//                B.rightNeighbors.add(ornt);
-//            }
-//        }
-//
-    }
-
-    public static void setNeighborsForOldTraps_spOnVert(Trapezoid A, Trapezoid B, Trapezoid old) {
-        if (old.leftNeighbors.size() != 0) {
-            if (old.leftNeighbors.size() == 1) {
-                Trapezoid oln = old.leftNeighbors.get(0);
-                if (oln.rightNeighbors.size() == 2) {
-                    if (oln.rightNeighbors.get(0) == old) {
-                        oln.rightNeighbors.set(0, B);
-                    } else {
-                        oln.rightNeighbors.set(1, A);
-                    }
-                } else {
-                    if(B.leftNeighbors.get(0) == oln){
-                        oln.rightNeighbors.set(0, B);
-                    }
-                    else{
-                        oln.rightNeighbors.set(0, A);
+    //Rewires the neighbor slots after the trapezoids in removed have been replaced by created.
+    //Two trapezoids are neighbors when they share the vertical extension of the same vertex
+    //and that extension has non-zero length between them, i.e. they share a top or bottom segment.
+    //Only trapezoids touching a removed one can be affected, so the work is local to the update.
+    private static void linkNeighbors(List<Trapezoid> removed, List<Trapezoid> created){
+        Set<Trapezoid> removedSet = new HashSet<>(removed);
+        Set<Trapezoid> outer = new HashSet<>();
+        for(Trapezoid old: removed){
+            addOuter(outer, old.lowerLeft, removedSet);
+            addOuter(outer, old.upperLeft, removedSet);
+            addOuter(outer, old.lowerRight, removedSet);
+            addOuter(outer, old.upperRight, removedSet);
+        }
+        for(Trapezoid o: outer){
+            if(removedSet.contains(o.upperLeft)) o.upperLeft = null;
+            if(removedSet.contains(o.lowerLeft)){
+                o.lowerLeft = o.upperLeft;
+                o.upperLeft = null;
+            }
+            if(removedSet.contains(o.upperRight)) o.upperRight = null;
+            if(removedSet.contains(o.lowerRight)){
+                o.lowerRight = o.upperRight;
+                o.upperRight = null;
+            }
+        }
+
+        Map<Vertex, List<Trapezoid>> byLeftp = new HashMap<>();
+        Map<Vertex, List<Trapezoid>> byRightp = new HashMap<>();
+        for(Trapezoid c: created){
+            byLeftp.computeIfAbsent(c.leftp, k -> new ArrayList<>()).add(c);
+            byRightp.computeIfAbsent(c.rightp, k -> new ArrayList<>()).add(c);
+        }
+        for(Trapezoid o: outer){
+            byLeftp.computeIfAbsent(o.leftp, k -> new ArrayList<>()).add(o);
+            byRightp.computeIfAbsent(o.rightp, k -> new ArrayList<>()).add(o);
+        }
+
+        for(Trapezoid c: created){
+            List<Trapezoid> left = byRightp.get(c.leftp);
+            if(left != null){
+                for(Trapezoid n: left){
+                    if(n != c && sharesExtension(n, c)){
+                        addLeftNeighbor(c, n);
+                        addRightNeighbor(n, c);
                     }
                 }
-            } else {
-                Trapezoid olnt = old.leftNeighbors.get(1);
-                Trapezoid olnb = old.leftNeighbors.get(0);
-                if (olnt.rightNeighbors.size() == 1) {
-                    olnt.rightNeighbors.set(0, A);
-                } else {
-                    throw new Error("I thought this was impossible");
-                }
-                if (olnb.rightNeighbors.size() == 1) {
-                    olnb.rightNeighbors.set(0, B);
-                } else {
-                    throw new Error("I Thought this was impossible");
-                }
             }
-        }
-    }
-
-    public static void setNeighborsForOldTraps_sqOnVert(Trapezoid A, Trapezoid B, Trapezoid old) {
-        if (old.rightNeighbors.size() != 0) {
-            if (old.rightNeighbors.size() == 1) {
-                Trapezoid oln = old.rightNeighbors.get(0);
-                if (oln.leftNeighbors.size() == 2) {
-                    if (oln.leftNeighbors.get(0) == old) {
-                        oln.leftNeighbors.set(0, B);
-                    } else {
-                        oln.leftNeighbors.set(1, A);
+            List<Trapezoid> right = byLeftp.get(c.rightp);
+            if(right != null){
+                for(Trapezoid n: right){
+                    if(n != c && sharesExtension(c, n)){
+                        addRightNeighbor(c, n);
+                        addLeftNeighbor(n, c);
                     }
-                } else {
-                    throw new Error("I thought this was impossible");
-                }
-            } else {
-                Trapezoid olnt = old.rightNeighbors.get(1);
-                Trapezoid olnb = old.rightNeighbors.get(0);
-                if (olnt.leftNeighbors.size() == 1) {
-                    olnt.leftNeighbors.set(0, A);
-                } else {
-                    throw new Error("I thought this was impossible");
-                }
-                if (olnb.leftNeighbors.size() == 1) {
-                    olnb.leftNeighbors.set(0, B);
-                } else {
-                    throw new Error("I Thought this was impossible");
                 }
             }
         }
     }
 
-    public static void setNeighborsForOldTraps_spNOTonVert(Trapezoid A, Trapezoid old) {
-
-        if(old.leftNeighbors.size() == 2){
-            Trapezoid olnt = old.leftNeighbors.get(1);
-            Trapezoid olnb = old.leftNeighbors.get(0);
+    //Whether right continues left across the vertical extension through left.rightp
+    private static boolean sharesExtension(Trapezoid left, Trapezoid right){
+        return left.rightp == right.leftp && (left.top == right.top || left.bottom == right.bottom);
+    }
 
-            if(olnt.rightNeighbors.size() == 2){
-                if(olnt.rightNeighbors.get(0) == old){
-                    olnt.rightNeighbors.set(0, A);
-                }
-                else{
-                    olnt.rightNeighbors.set(1, A);
-                }
-            }
-            else if(olnt.rightNeighbors.size() == 1){
-                olnt.rightNeighbors.set(0, A);
-            }
+    private static void addOuter(Set<Trapezoid> outer, Trapezoid n, Set<Trapezoid> removedSet){
+        if(n != null && !removedSet.contains(n)) outer.add(n);
+    }
 
-            if(olnb.rightNeighbors.size() == 2){
-                if(olnb.rightNeighbors.get(0) == old){
-                    olnb.rightNeighbors.set(0, A);
-                }
-                else{
-                    olnb.rightNeighbors.set(1, A);
-                }
-            }
-            else if(olnb.rightNeighbors.size() == 1){
-                olnb.rightNeighbors.set(0, A);
-            }
+    //A second neighbor goes to the upper slot if the first one continues the owner's bottom,
+    //otherwise the first one moves up
+    private static void addLeftNeighbor(Trapezoid owner, Trapezoid n){
+        if(owner.lowerLeft == n || owner.upperLeft == n) return;
+        if(owner.upperLeft != null) throw new IllegalStateException("A trapezoid can't have more than two neighbors on one side");
+        if(owner.lowerLeft == null){
+            owner.lowerLeft = n;
         }
-        else if(old.leftNeighbors.size() == 1){
-            Trapezoid oln = old.leftNeighbors.get(0);
-            if(oln.rightNeighbors.size() == 2){
-                if(oln.rightNeighbors.get(0) == old){
-                    oln.rightNeighbors.set(0, A);
-                }
-                else{
-                    oln.rightNeighbors.set(1, A);
-                }
-            }
-            else if(oln.rightNeighbors.size() == 1){
-                oln.rightNeighbors.set(0, A);
-            }
+        else if(owner.lowerLeft.bottom == owner.bottom){
+            owner.upperLeft = n;
         }
         else{
-            // do nothing. Don't need to update anything
+            owner.upperLeft = owner.lowerLeft;
+            owner.lowerLeft = n;
         }
-
     }
 
-    public static void setNeighborsForOldTraps_sqNOTonVert(Trapezoid A, Trapezoid old) {
-
-        if(old.rightNeighbors.size() == 2){
-            Trapezoid olnt = old.rightNeighbors.get(1);
-            Trapezoid olnb = old.rightNeighbors.get(0);
-
-            if(olnt.leftNeighbors.size() == 2){
-                if(olnt.leftNeighbors.get(0) == old){
-                    olnt.leftNeighbors.set(0, A);
-                }
-                else{
-                    olnt.leftNeighbors.set(1, A);
-                }
-            }
-            else if(olnt.leftNeighbors.size() == 1){
-                olnt.leftNeighbors.set(0, A);
-            }
-
-            if(olnb.leftNeighbors.size() == 2){
-                if(olnb.leftNeighbors.get(0) == old){
-                    olnb.leftNeighbors.set(0, A);
-                }
-                else{
-                    olnb.leftNeighbors.set(1, A);
-                }
-            }
-            else if(olnb.leftNeighbors.size() == 1){
-                olnb.leftNeighbors.set(0, A);
-            }
+    private static void addRightNeighbor(Trapezoid owner, Trapezoid n){
+        if(owner.lowerRight == n || owner.upperRight == n) return;
+        if(owner.upperRight != null) throw new IllegalStateException("A trapezoid can't have more than two neighbors on one side");
+        if(owner.lowerRight == null){
+            owner.lowerRight = n;
         }
-        else if(old.rightNeighbors.size() == 1){
-            Trapezoid oln = old.rightNeighbors.get(0);
-            if(oln.leftNeighbors.size() == 2){
-                if(oln.leftNeighbors.get(0) == old){
-                    oln.leftNeighbors.set(0, A);
-                }
-                else{
-                    oln.leftNeighbors.set(1, A);
-                }
-            }
-            else if(oln.leftNeighbors.size() == 1){
-                oln.leftNeighbors.set(0, A);
-            }
+        else if(owner.lowerRight.bottom == owner.bottom){
+            owner.upperRight = n;
         }
         else{
-            // do nothing. Don't need to update anything
+            owner.upperRight = owner.lowerRight;
+            owner.lowerRight = n;
         }
-
     }
 
     public static List<Trapezoid> findNewUpperTraps(int startIndex, List<Trapezoid> intersecting, Segment s){
@@ -932,7 +751,7 @@ public class TrapMapBuilder {
         // traverse till we find a right p that is above s
         Vertex rightp = start.rightp;
         int i = startIndex;
-        while(right_pBelowS(rightp, s) && i != intersecting.size() - 1){
+        while(Predicates.below(rightp, s) && i != intersecting.size() - 1){
             Trapezoid next = intersecting.get(++i);
             ret.add(next);
             rightp = next.rightp;
@@ -945,10 +764,10 @@ public class TrapMapBuilder {
         Trapezoid start = intersecting.get(startIndex);
         ret.add(start);
 
-        // traverse till we find a right p that is above s
+        // traverse till we find a right p that is below s
         Vertex rightp = start.rightp;
         int i = startIndex;
-        while(!right_pBelowS(rightp, s) && i != intersecting.size() - 1){
+        while(!Predicates.below(rightp, s) && i != intersecting.size() - 1){
             Trapezoid next = intersecting.get(++i);
             ret.add(next);
             rightp = next.rightp;
@@ -956,27 +775,6 @@ public class TrapMapBuilder {
         return ret;
     }
 
-    private static boolean right_pBelowS(Vertex p, Segment s){
-        float m = (s.p.y - s.q.y)/(s.p.x - s.q.x);
-        float sy = m * (p.x - s.p.x) + s.p.y;
-        boolean ret = p.y < sy;
-        return ret;
-    }
-
-    private static void replaceNode(List<Node> parents, Node oldChild, Node newChild, SearchStructure ss){
-        if (parents.size() == 0) {
-            ss.replaceAtRoot(newChild);
-        }
-
-        for(Node parent: parents){
-            if (oldChild == parent.lChild) {
-                parent.lChild = newChild;
-            } else {
-                parent.rChild = newChild;
-            }
-        }
-
-    }
 
 
 }
@@ -0,0 +1,62 @@
+package main.metrics;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+//Receives the phases of map builds and samples of their segment insertions, for profilers.
+//Java 8 has no event API for Flight Recorder, so the recorder is a service: the jfr module
+//provides one emitting JFR events, and without it on the class path RECORDER records nothing
+public interface BuildRecorder {
+
+    // Phases of reading a DCEL and building a map from it
+    String READ = "read";                 // Parsing and linking the DCEL file, items are half edges
+    String SEGMENTS = "segments";         // Pairing half edges into segments, items are segments
+    String BOUNDING_BOX = "boundingBox";  // Finding the extent of the segments, items are segments
+    String INSERTION = "insertion";       // Inserting the segments one by one, items are segments
+
+    // Handlers an insertion can run
+    String ONE = "handleOneIntersectingTrap";
+    String MANY = "handleManyIntersectingTrap";
+
+    //Records nothing
+    BuildRecorder NONE = new BuildRecorder() {
+        public Phase phase(String name){
+            return items -> {};
+        }
+
+        public Insertion insertion(){
+            return (crossed, handler, nodes, trapezoids) -> {};
+        }
+    };
+
+    //The first recorder on the class path, NONE if there is none or it cannot be loaded, like the
+    //JFR one on a Java 8 runtime
+    BuildRecorder RECORDER = find();
+
+    //Starts timing a phase, ended by Phase.end
+    Phase phase(String name);
+
+    //Starts timing the insertion of a segment. Recorders sample insertions, those not sampled
+    //may be handed an Insertion that records nothing
+    Insertion insertion();
+
+    interface Phase {
+        void end(long items);
+    }
+
+    interface Insertion {
+        //crossed: trapezoids followSegment found, handler: ONE or MANY, nodes and trapezoids: created
+        void end(int crossed, String handler, int nodes, int trapezoids);
+    }
+
+    static BuildRecorder find(){
+        try{
+            Iterator<BuildRecorder> found = ServiceLoader.load(BuildRecorder.class, BuildRecorder.class.getClassLoader()).iterator();
+            return found.hasNext() ? found.next() : NONE;
+        }
+        catch(ServiceConfigurationError | LinkageError e){
+            return NONE;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package main.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+//Concurrent histogram of durations in nanoseconds. Each power of two is split into 16 buckets, so
+//a percentile is reported within 1/16 of its true value whatever its magnitude. The buckets are
+//striped counters, threads recording at the same time don't contend on a cache line
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) << SUB_BITS;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram(){
+        for(int i = 0; i < BUCKETS; i++) counts[i] = new LongAdder();
+    }
+
+    public void record(long nanos){
+        if(nanos < 0) nanos = 0;
+        counts[index(nanos)].increment();
+        max.accumulate(nanos);
+    }
+
+    public long count(){
+        long n = 0;
+        for(int i = 0; i < BUCKETS; i++) n += counts[i].sum();
+        return n;
+    }
+
+    //The smallest duration at least a fraction p of the recorded ones don't exceed, rounded up to
+    //the end of its bucket, 0 if nothing was recorded
+    public long percentile(double p){
+        long[] snapshot = new long[BUCKETS];
+        long n = 0;
+        for(int i = 0; i < BUCKETS; i++){
+            snapshot[i] = counts[i].sum();
+            n += snapshot[i];
+        }
+        if(n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(p * n));
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++){
+            seen += snapshot[i];
+            if(seen >= rank) return Math.min(lowest(i + 1) - 1, max.get());
+        }
+        return max.get();
+    }
+
+    public long max(){
+        return max.get();
+    }
+
+    public void reset(){
+        for(int i = 0; i < BUCKETS; i++) counts[i].reset();
+        max.reset();
+    }
+
+    //Count and percentiles in microseconds on one line
+    public String summary(){
+        return String.format("count %d p50 %.1fus p90 %.1fus p99 %.1fus p99.9 %.1fus max %.1fus",
+                count(), percentile(.5) / 1e3, percentile(.9) / 1e3, percentile(.99) / 1e3,
+                percentile(.999) / 1e3, max() / 1e3);
+    }
+
+    private static int index(long v){
+        if(v < SUB) return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (exp - SUB_BITS)) & (SUB - 1);
+        return ((exp - SUB_BITS + 1) << SUB_BITS) + sub;
+    }
+
+    //The smallest value of bucket i
+    private static long lowest(int i){
+        if(i < SUB) return i;
+        if(i >= BUCKETS) return Long.MAX_VALUE;
+        int exp = (i >> SUB_BITS) + SUB_BITS - 1;
+        return (1L << exp) | ((long) (i & (SUB - 1)) << (exp - SUB_BITS));
+    }
+}
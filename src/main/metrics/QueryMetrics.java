@@ -0,0 +1,144 @@
+package main.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+//How the queries of a map descend its search structure: the number of nodes visited, which
+//kind of node ended the descent, and the latency. Disabled it costs a query one volatile read,
+//the search structures only call exit from their instrumented descents. Also shows how deep the
+//map's build came out, so a depth bounded build that missed its bound is visible over JMX
+public class QueryMetrics implements QueryMetricsMBean {
+
+    // How a descent ended
+    public static final int OUTSIDE = 0;   // Outside the bounding box, no node visited
+    public static final int X_VERTEX = 1;  // On the vertex of an XNode
+    public static final int Y_VERTEX = 2;  // On an endpoint of the segment of a YNode
+    public static final int SEGMENT = 3;   // On the segment of a YNode
+    public static final int LEAF = 4;      // In the trapezoid of a leaf
+
+    private static final int MAX_DEPTH = 256; // Deeper descents are counted in the last bucket
+
+    private volatile boolean enabled;
+    private final LongAdder[] exits = new LongAdder[LEAF + 1];
+    private final LongAdder[] depths = new LongAdder[MAX_DEPTH + 1];
+    private final LongAdder depthTotal = new LongAdder();
+    private final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+    public final LatencyHistogram latency = new LatencyHistogram();
+
+    // The build of the map, see TrapezoidMap.boundDepth. Not cleared by reset
+    private volatile int buildDepth = -1;
+    private volatile int depthBound = -1;
+    private volatile int rebuilds;
+
+    public QueryMetrics(){
+        for(int i = 0; i < exits.length; i++) exits[i] = new LongAdder();
+        for(int i = 0; i < depths.length; i++) depths[i] = new LongAdder();
+    }
+
+    //Records a descent that visited depth nodes and ended as exit
+    public void exit(int exit, int depth){
+        exits[exit].increment();
+        depths[Math.min(depth, MAX_DEPTH)].increment();
+        depthTotal.add(depth);
+        maxDepth.accumulate(depth);
+    }
+
+    //Records the longest search path of the map's build, the bound it had to meet, -1 for none, and
+    //how many rebuilds that took
+    public void build(int depth, int depthBound, int rebuilds){
+        this.buildDepth = depth;
+        this.depthBound = depthBound;
+        this.rebuilds = rebuilds;
+    }
+
+    public boolean isEnabled(){
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled){
+        this.enabled = enabled;
+    }
+
+    public long getQueries(){
+        long n = 0;
+        for(LongAdder e: exits) n += e.sum();
+        return n;
+    }
+
+    public long getOutsideQueries(){
+        return exits[OUTSIDE].sum();
+    }
+
+    public long getXNodeVertexHits(){
+        return exits[X_VERTEX].sum();
+    }
+
+    public long getYNodeVertexHits(){
+        return exits[Y_VERTEX].sum();
+    }
+
+    public long getSegmentHits(){
+        return exits[SEGMENT].sum();
+    }
+
+    public long getLeafHits(){
+        return exits[LEAF].sum();
+    }
+
+    public double getMeanDepth(){
+        long n = getQueries();
+        return n == 0 ? 0 : (double) depthTotal.sum() / n;
+    }
+
+    public int getMaxDepth(){
+        return (int) maxDepth.get();
+    }
+
+    public long[] getDepthHistogram(){
+        int last = getMaxDepth();
+        long[] histogram = new long[Math.min(last, MAX_DEPTH) + 1];
+        for(int i = 0; i < histogram.length; i++) histogram[i] = depths[i].sum();
+        return histogram;
+    }
+
+    public double getLatencyP50Micros(){
+        return latency.percentile(.5) / 1e3;
+    }
+
+    public double getLatencyP99Micros(){
+        return latency.percentile(.99) / 1e3;
+    }
+
+    public double getLatencyP999Micros(){
+        return latency.percentile(.999) / 1e3;
+    }
+
+    public String getLatencySummary(){
+        return latency.summary();
+    }
+
+    public int getBuildDepth(){
+        return buildDepth;
+    }
+
+    public int getDepthBound(){
+        return depthBound;
+    }
+
+    public boolean isDepthBoundMet(){
+        int bound = depthBound;
+        return bound < 0 || buildDepth <= bound;
+    }
+
+    public int getRebuilds(){
+        return rebuilds;
+    }
+
+    public void reset(){
+        for(LongAdder e: exits) e.reset();
+        for(LongAdder d: depths) d.reset();
+        depthTotal.reset();
+        maxDepth.reset();
+        latency.reset();
+    }
+}
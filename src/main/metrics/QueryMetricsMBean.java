@@ -0,0 +1,50 @@
+package main.metrics;
+
+//Management interface of QueryMetrics. Counts and histograms cover the queries located while
+//Enabled was true, since the last reset. The build attributes describe the map's last build
+public interface QueryMetricsMBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getQueries();
+
+    long getOutsideQueries();
+
+    long getXNodeVertexHits();
+
+    long getYNodeVertexHits();
+
+    long getSegmentHits();
+
+    long getLeafHits();
+
+    double getMeanDepth();
+
+    int getMaxDepth();
+
+    //Number of queries that visited i nodes, at index i
+    long[] getDepthHistogram();
+
+    double getLatencyP50Micros();
+
+    double getLatencyP99Micros();
+
+    double getLatencyP999Micros();
+
+    String getLatencySummary();
+
+    //Longest search path when the map was built, -1 if it wasn't measured
+    int getBuildDepth();
+
+    //Longest search path the depth bounded build accepted, -1 if the build wasn't bounded
+    int getDepthBound();
+
+    //False if every attempt of the depth bounded build was deeper than the bound and the shallowest was kept
+    boolean isDepthBoundMet();
+
+    int getRebuilds();
+
+    void reset();
+}
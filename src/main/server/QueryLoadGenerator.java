@@ -0,0 +1,148 @@
+package main.server;
+
+import main.metrics.LatencyHistogram;
+import main.structures.search.ResponseType;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Load test for a running QueryServer. Opens all connections at once, each on its own thread like
+//the server, and once they are all connected each sends its requests of uniformly random points
+//one after the other, checking every answer. Reports throughput, client side latency percentiles
+//and the server's own, and exits with status 1 if a connection failed or an answer was wrong.
+//Usage: QueryLoadGenerator <port> <connections> <requests per connection> <points per request> [<seed>]
+public class QueryLoadGenerator {
+
+    private final int port;
+    private final int requests;
+    private final int batch;
+    private final long seed;
+    private final float[] bounds = new float[4];
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong answered = new AtomicLong();
+
+    private QueryLoadGenerator(int port, int requests, int batch, long seed){
+        this.port = port;
+        this.requests = requests;
+        this.batch = batch;
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if(args.length < 4){
+            System.out.println("Usage: QueryLoadGenerator <port> <connections> <requests per connection> <points per request> [<seed>]");
+            return;
+        }
+        int connections = Integer.parseInt(args[1]);
+        QueryLoadGenerator load = new QueryLoadGenerator(Integer.parseInt(args[0]), Integer.parseInt(args[2]),
+                Integer.parseInt(args[3]), args.length > 4 ? Long.parseLong(args[4]) : 1);
+        String[] box = QueryServer.tokens(load.command("BOUNDS"));
+        for(int i = 0; i < 4; i++) load.bounds[i] = Float.parseFloat(box[i]);
+
+        ExecutorService clients = QueryServer.newPerTaskExecutor();
+        CountDownLatch connected = new CountDownLatch(connections);
+        for(int c = 0; c < connections; c++){
+            int id = c;
+            clients.execute(() -> load.client(id, connected));
+        }
+        connected.await();
+        long started = System.nanoTime();
+        clients.shutdown();
+        clients.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        long requests = load.latency.count();
+        System.out.printf("%d connections on %s, %d failed%n", connections,
+                clients instanceof ThreadPoolExecutor ? "platform threads" : "virtual threads", load.failures.get());
+        System.out.printf("%d requests, %d points in %.2f s: %.0f requests/s, %.0f points/s%n",
+                requests, load.answered.get(), seconds, requests / seconds, load.answered.get() / seconds);
+        System.out.println("Client latency " + load.latency.summary());
+        System.out.println("Server latency " + load.command("STATS").trim());
+        if(load.failures.get() > 0) System.exit(1);
+    }
+
+    private void client(int id, CountDownLatch connected){
+        boolean counted = false;
+        try(Socket s = new Socket(InetAddress.getLoopbackAddress(), port);
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))){
+            s.setTcpNoDelay(true);
+            connected.countDown();
+            counted = true;
+            connected.await();
+
+            Random random = new Random(seed * 31 + id);
+            StringBuilder request = new StringBuilder();
+            for(int r = 0; r < requests; r++){
+                String requestId = id + "." + r;
+                request.setLength(0);
+                request.append(requestId);
+                for(int i = 0; i < batch; i++){
+                    request.append(' ').append(bounds[0] + random.nextFloat() * (bounds[2] - bounds[0]));
+                    request.append(' ').append(bounds[1] + random.nextFloat() * (bounds[3] - bounds[1]));
+                }
+                long start = System.nanoTime();
+                out.append(request).append('\n');
+                out.flush();
+                for(int i = 0; i < batch; i++){
+                    String answer = in.readLine();
+                    if(!answers(answer, requestId)) throw new IOException("Unexpected answer to " + requestId + ": " + answer);
+                }
+                latency.record(System.nanoTime() - start);
+                answered.addAndGet(batch);
+            }
+            out.write("QUIT\n");
+            out.flush();
+        }
+        catch(IOException e){
+            if(failures.incrementAndGet() == 1) System.err.println("Connection " + id + " failed: " + e.getMessage());
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        finally{
+            if(!counted) connected.countDown();
+        }
+    }
+
+    //Whether answer is "<requestId> <type> <number>" for a point inside the bounding box
+    static boolean answers(String answer, String requestId){
+        if(answer == null) return false;
+        String[] tokens = QueryServer.tokens(answer);
+        if(tokens.length != 3 || !tokens[0].equals(requestId)) return false;
+        try{
+            ResponseType.valueOf(tokens[1]);
+            Integer.parseInt(tokens[2]);
+            return true;
+        }
+        catch(IllegalArgumentException e){
+            return false;
+        }
+    }
+
+    //Sends a one line command on a connection of its own and returns the one line answer
+    private String command(String command) throws IOException {
+        try(Socket s = new Socket(InetAddress.getLoopbackAddress(), port);
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8)){
+            out.write(command + "\nQUIT\n");
+            out.flush();
+            return in.readLine();
+        }
+    }
+}
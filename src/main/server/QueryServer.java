@@ -0,0 +1,227 @@
+package main.server;
+
+import main.input.DCELByteReader;
+import main.input.TrapMapBuilder;
+import main.metrics.LatencyHistogram;
+import main.structures.Segment;
+import main.structures.TrapezoidMap;
+import main.structures.search.MappedSearchStructure;
+import main.structures.search.QueryResponse;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+
+//Serves point location on one built, frozen map, or on a snapshot of one, to clients on the loopback interface. Every
+//connection gets its own thread, a virtual thread on JVMs that have them, so thousands of
+//connections need no pool tuning. The protocol is text, one request per line:
+//  <id> <x> <y> [<x> <y> ...]   locate one point or a batch of points
+//  STATS                        latency percentiles of the locate requests served so far
+//  BOUNDS                       left, bottom, right and top of the bounding box
+//  QUIT                         close the connection
+//A locate request is answered by a line "<id> <type> <number>" per point, in the order of the
+//points, where type is the ResponseType and number is QueryResponse.id of the answer. A point
+//outside the bounding box is answered by "<id> OUTSIDE". A malformed request is answered by a
+//line "ERROR <message>".
+//The map's QueryMetrics are registered as an MBean named after the file, off until enabled over JMX.
+//A snapshot is only memory mapped, so the server starts at once whatever the size of the map, but
+//keeps no metrics. Usage:
+//  QueryServer <dcel file> [<port>]
+//  QueryServer --snapshot <snapshot file> [<port>]
+public class QueryServer {
+
+    private static final int BACKLOG = 1 << 12;
+
+    private final TrapezoidMap map; //Null when serving a snapshot
+    private final MappedSearchStructure snapshot; //Null when serving a map
+    private final ServerSocket server;
+    private final ExecutorService connections = newPerTaskExecutor();
+    private final String bounds;
+
+    public final LatencyHistogram latency = new LatencyHistogram(); // Time from reading a locate request to sending its answer
+
+    //map must not be changed while it is served. Port 0 picks a free port
+    public QueryServer(TrapezoidMap map, int port) throws IOException {
+        this(map, null, bounds(map), port);
+    }
+
+    public QueryServer(MappedSearchStructure snapshot, int port) throws IOException {
+        this(null, snapshot, snapshot.left() + " " + snapshot.bottom() + " " + snapshot.right() + " " + snapshot.top(), port);
+    }
+
+    private QueryServer(TrapezoidMap map, MappedSearchStructure snapshot, String bounds, int port) throws IOException {
+        this.map = map;
+        this.snapshot = snapshot;
+        this.bounds = bounds;
+        server = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress());
+    }
+
+    private static String bounds(TrapezoidMap map){
+        float left = Float.MAX_VALUE, right = -Float.MAX_VALUE, bottom = Float.MAX_VALUE, top = -Float.MAX_VALUE;
+        for(Segment s: map.segments){ // The sides of the bounding box are among them
+            left = Math.min(left, Math.min(s.p.x, s.q.x));
+            right = Math.max(right, Math.max(s.p.x, s.q.x));
+            bottom = Math.min(bottom, Math.min(s.p.y, s.q.y));
+            top = Math.max(top, Math.max(s.p.y, s.q.y));
+        }
+        return left + " " + bottom + " " + right + " " + top;
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean mapped = args.length > 0 && args[0].equals("--snapshot");
+        int file = mapped ? 1 : 0;
+        if(args.length <= file){
+            System.out.println("Usage: QueryServer <dcel file> [<port>]");
+            System.out.println("       QueryServer --snapshot <snapshot file> [<port>]");
+            return;
+        }
+        long start = System.nanoTime();
+        int port = args.length > file + 1 ? Integer.parseInt(args[file + 1]) : 0;
+        QueryServer server;
+        String served;
+        if(mapped){
+            server = new QueryServer(MappedSearchStructure.open(Paths.get(args[file])), port);
+            served = "the snapshot " + args[file];
+        }
+        else{
+            TrapezoidMap map = TrapMapBuilder.buildTrapMap(DCELByteReader.read(Paths.get(args[file])), 0);
+            map.freeze();
+            map.registerMBean(Paths.get(args[file]).getFileName().toString());
+            server = new QueryServer(map, port);
+            served = map.segments.size() + " segments";
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.println("Latency " + server.latency.summary())));
+        server.start();
+        System.out.println("Serving " + served + " on port " + server.port() + " after "
+                + (System.nanoTime() - start) / 1000000 + " ms, "
+                + (server.virtualThreads() ? "one virtual thread" : "one platform thread") + " per connection");
+    }
+
+    public int port(){
+        return server.getLocalPort();
+    }
+
+    public boolean virtualThreads(){
+        return !(connections instanceof ThreadPoolExecutor);
+    }
+
+    //Accepts connections on a thread of its own until close is called
+    public void start(){
+        new Thread(this::accept, "query-server-accept").start();
+    }
+
+    public void close() throws IOException {
+        server.close();
+        connections.shutdownNow();
+    }
+
+    private void accept(){
+        while(!server.isClosed()){
+            try{
+                Socket client = server.accept();
+                connections.execute(() -> serve(client));
+            }
+            catch(IOException e){
+                if(!server.isClosed()) System.err.println("Accept failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void serve(Socket client){
+        try(Socket s = client;
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8), 1 << 16)){
+            s.setTcpNoDelay(true);
+            QueryResponse response = new QueryResponse();
+            StringBuilder reply = new StringBuilder();
+            String line;
+            while((line = in.readLine()) != null){
+                long start = System.nanoTime();
+                reply.setLength(0);
+                boolean locate = false;
+                if(line.equals("QUIT")) break;
+                else if(line.equals("STATS")) reply.append(latency.summary()).append('\n');
+                else if(line.equals("BOUNDS")) reply.append(bounds).append('\n');
+                else if(!line.trim().isEmpty()) locate = locate(line, response, reply);
+                out.append(reply);
+                out.flush();
+                if(locate) latency.record(System.nanoTime() - start);
+            }
+        }
+        catch(IOException e){
+            //The client went away
+        }
+    }
+
+    //Answers a locate request into reply, false if it was malformed
+    private boolean locate(String line, QueryResponse response, StringBuilder reply){
+        String[] tokens = tokens(line);
+        if(tokens.length < 3 || tokens.length % 2 == 0){
+            reply.append("ERROR expected <id> <x> <y> [<x> <y> ...]\n");
+            return false;
+        }
+        float[] xy = new float[tokens.length - 1];
+        try{
+            for(int i = 1; i < tokens.length; i++) xy[i - 1] = Float.parseFloat(tokens[i]);
+        }
+        catch(NumberFormatException e){
+            reply.append("ERROR ").append(e.getMessage()).append('\n');
+            return false;
+        }
+        for(int i = 0; i < xy.length; i += 2){
+            reply.append(tokens[0]).append(' ');
+            if(snapshot != null){
+                int answer = snapshot.locate(xy[i], xy[i + 1]);
+                if(answer >= 0) reply.append(MappedSearchStructure.type(answer)).append(' ').append(snapshot.id(answer));
+                else reply.append("OUTSIDE");
+            }
+            else if(map.locate(xy[i], xy[i + 1], response)) reply.append(response.type).append(' ').append(response.id());
+            else reply.append("OUTSIDE");
+            reply.append('\n');
+        }
+        return true;
+    }
+
+    //Splits at runs of spaces and tabs
+    static String[] tokens(String line){
+        int count = 0;
+        for(int i = 0; i < line.length(); i++){
+            if(!blank(line.charAt(i)) && (i == 0 || blank(line.charAt(i - 1)))) count++;
+        }
+        String[] tokens = new String[count];
+        int k = 0;
+        for(int i = 0; i < line.length(); i++){
+            if(blank(line.charAt(i))) continue;
+            int start = i;
+            while(i < line.length() && !blank(line.charAt(i))) i++;
+            tokens[k++] = line.substring(start, i);
+        }
+        return tokens;
+    }
+
+    private static boolean blank(char c){
+        return c == ' ' || c == '\t';
+    }
+
+    //A new thread per task: virtual threads on JVMs that have them (Java 21), looked up reflectively
+    //so this still builds for Java 8, and a cached pool of platform threads otherwise
+    static ExecutorService newPerTaskExecutor(){
+        try{
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch(ReflectiveOperationException | UnsupportedOperationException e){
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
@@ -17,20 +17,20 @@ public class DCEL {
     public void print(){
         System.out.println("~~~~ VERTICES ~~~~");
         for(Vertex v: vertices){
-            System.out.println(v.name + " ( " + v.x + "," + v.y + " ) " + v.incidentEdge.name);
+            System.out.println(v.name() + " ( " + v.x + "," + v.y + " ) " + v.incidentEdge.name());
         }
 
         System.out.println("~~~~ FACES ~~~~");
         for(Face f: faces){
-            String outer = f.outerComponent != null ? f.outerComponent.name : "null";
+            String outer = f.outerComponent != null ? f.outerComponent.name() : "null";
             //String inner = f.innerComponent != null ? f.innerComponent.name : "null";
             System.out.println(f.name + " " + outer + " ");
         }
 
         System.out.println("~~~~ HALF-EDGES ~~~~");
         for(HalfEdge h: halfEdges){
-            System.out.println(h.name + " " + h.origin.name + " " + h.twin.name +
-                    " " + h.incidentFace.name + " " + h.next.name + " " + h.prev.name);
+            System.out.println(h.name() + " " + h.origin.name() + " " + h.twin.name() +
+                    " " + h.incidentFace.name + " " + h.next.name() + " " + h.prev.name());
         }
 
     }
@@ -1,8 +1,5 @@
 package main.structures.DCEL;
 
-import main.structures.Trapezoid;
-
-import java.util.ArrayList;
 import java.util.List;
 
 public class Face {
@@ -10,7 +7,7 @@ public class Face {
     public HalfEdge outerComponent;
     public List<HalfEdge> innerComponent;
     public String name;
-    private List<Trapezoid> trapezoids = new ArrayList<>();
+    //The trapezoids lying in a face belong to a map built from the DCEL, see TrapezoidMap.trapezoids
 
     public Face (int no, List<HalfEdge> inner, HalfEdge outer){
         this.name = "f" + no;
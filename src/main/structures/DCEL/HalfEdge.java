@@ -8,16 +8,20 @@ public class HalfEdge {
     public Face incidentFace;
     public HalfEdge next;
     public HalfEdge prev;
-    public String name;
+    public int no; //Index among the half edges of the DCEL, in file order
     public Segment segment;
     
     //Constructor for Bounding box halfEdges
-    public HalfEdge(Vertex origin, Face incidentFace, int a, int b){
+    public HalfEdge(Vertex origin, Face incidentFace, int no){
         this.origin = origin;
         this.incidentFace = incidentFace;
-        this.name = "e" + a + "," + b;
+        this.no = no;
 
     }
-    
+
+    //Built on every call, only for printing
+    public String name(){
+        return "e" + no;
+    }
 
 }
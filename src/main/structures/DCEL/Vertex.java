@@ -4,25 +4,29 @@ public class Vertex {
     public float x;
     public float y;
     public HalfEdge incidentEdge;
-    public String name;
-    public int no;
+    public int no; //Its number in the DCEL file, or 1 to 4 for the corners of the bounding box
+    public boolean corner; //A corner of the bounding box, answered by its name
+    public boolean deleted; //No segment of the trapezoid map ends here any more, its XNodes no longer answer the vertex
 
     public Vertex(float x, float y, int no){
         this.x = x;
         this.y = y;
-        name = "v" + no;
         this.no = no;
     }
 
-    public Vertex(float x, float y, String name){
-        this.x = x;
-        this.y = y;
-        this.name = name;
+    public Vertex(float x, float y, int no, boolean corner){
+        this(x, y, no);
+        this.corner = corner;
+    }
+
+    //v<no>, or c1 to c4 for the corners. Built on every call, only for printing
+    public String name(){
+        return (corner ? "c" : "v") + no;
     }
 
     public String queryString(){
-        if(name.getBytes()[0] == 'c'){
-            return name;
+        if(corner){
+            return name();
         }
         return "(" + x + ", " + y + ")";
     }
@@ -0,0 +1,60 @@
+package main.structures;
+
+import main.structures.DCEL.Vertex;
+
+import java.math.BigDecimal;
+
+//Exact orientation tests for the construction. The determinants are evaluated in double and
+//their sign is trusted when it is larger than the rounding error bound of Shewchuk's orient2d,
+//otherwise they are evaluated again exactly. Float coordinates are exact in double and in
+//BigDecimal, so the answers are those of exact arithmetic on the input coordinates
+public final class Predicates {
+
+    private static final double EPSILON = 0x1p-53;
+    private static final double ERROR_BOUND = (3.0 + 16.0 * EPSILON) * EPSILON;
+
+    private Predicates(){
+    }
+
+    //1 if v is above the line through s, -1 if it is below and 0 if it is on it. Under the symbolic
+    //shear a vertical segment goes straight up, so a vertex right of it is below it
+    public static int orientation(Segment s, Vertex v){
+        double left = s.dx * ((double) v.y - s.p.y);
+        double right = s.dy * ((double) v.x - s.p.x);
+        int sign = filtered(left, right);
+        if(sign != 2) return sign;
+        return exact(s.p.x, s.p.y, s.q.x, s.q.y, s.p.x, s.p.y, v.x, v.y);
+    }
+
+    //1 if the direction of b turns counterclockwise from the direction of a, -1 if it turns
+    //clockwise and 0 if they are parallel. Directions point from p to q
+    public static int turn(Segment a, Segment b){
+        int sign = filtered(a.dx * b.dy, a.dy * b.dx);
+        if(sign != 2) return sign;
+        return exact(a.p.x, a.p.y, a.q.x, a.q.y, b.p.x, b.p.y, b.q.x, b.q.y);
+    }
+
+    public static boolean below(Vertex v, Segment s){
+        return orientation(s, v) < 0;
+    }
+
+    //Sign of left - right, or 2 when rounding may have changed it
+    private static int filtered(double left, double right){
+        double det = left - right;
+        if((left > 0 && right <= 0) || (left < 0 && right >= 0) || (left == 0 && right == 0))
+            return det > 0 ? 1 : det < 0 ? -1 : 0;
+        double bound = ERROR_BOUND * (Math.abs(left) + Math.abs(right));
+        if(det > bound) return 1;
+        if(-det > bound) return -1;
+        return 2;
+    }
+
+    //Sign of (aq - ap) x (bq - bp)
+    private static int exact(float apx, float apy, float aqx, float aqy, float bpx, float bpy, float bqx, float bqy){
+        BigDecimal ax = new BigDecimal(aqx).subtract(new BigDecimal(apx));
+        BigDecimal ay = new BigDecimal(aqy).subtract(new BigDecimal(apy));
+        BigDecimal bx = new BigDecimal(bqx).subtract(new BigDecimal(bpx));
+        BigDecimal by = new BigDecimal(bqy).subtract(new BigDecimal(bpy));
+        return ax.multiply(by).subtract(ay.multiply(bx)).signum();
+    }
+}
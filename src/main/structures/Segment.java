@@ -8,10 +8,25 @@ import java.util.ArrayList;
 import java.util.Collections;
 
 public class Segment {
-    public String name;
+    //Numbers of the sides of the bounding box, named L, R, T and B
+    public static final int L = -1;
+    public static final int R = -2;
+    public static final int T = -3;
+    public static final int B = -4;
+    private static final String[] SIDES = {"L", "R", "T", "B"};
+
+    public int no; //Index among the segments of the DCEL, or one of the sides above
     public Vertex p;
     public Vertex q;
     public HalfEdge[] halfEdges = new HalfEdge[2]; //Should only be two
+    public boolean deleted; //Removed from the trapezoid map, its YNodes no longer answer the segment
+
+    //q - p in double and the slope, computed once for the predicates. vertical is exact, a segment
+    //with p.x == q.x goes straight up under the symbolic shear
+    public boolean vertical;
+    public double dx;
+    public double dy;
+    public double slope;
 
     public Segment(int no, HalfEdge e1, HalfEdge e2) {
         List<Vertex> pl = new ArrayList<>();
@@ -22,28 +37,47 @@ public class Segment {
         Collections.sort(pl, new PQComparator());
         p = pl.get(0);
         q = pl.get(1);
-        name = "s" + no;
+        this.no = no;
+        cacheLine();
     }
 
-    public Segment(Vertex a, Vertex b, String name){
+    public Segment(Vertex a, Vertex b, int no){
         List<Vertex> pl = new ArrayList<>();
         pl.add(a);
         pl.add(b);
         Collections.sort(pl, new PQComparator());
         p = pl.get(0);
         q = pl.get(1);
-        this.name = name;
+        this.no = no;
+        cacheLine();
+    }
+
+    private void cacheLine(){
+        dx = (double) q.x - p.x;
+        dy = (double) q.y - p.y;
+        vertical = dx == 0;
+        slope = dy / dx;
+    }
+
+    //s<no>, or L, R, T or B for the sides of the bounding box. Built on every call, only for printing
+    public String name(){
+        return no < 0 ? side(no) : "s" + no;
+    }
+
+    //Name of the side of the bounding box numbered no
+    public static String side(int no){
+        return SIDES[-no - 1];
     }
 
     public String toString(){
-        return name;
+        return name();
     }
 
 
     public String queryString(){
 
-        if(name.equals("T") || name.equals("B") || name.equals("R") || name.equals("L")){
-            return name;
+        if(no < 0){
+            return name();
         }
         return "( " + p.queryString() + ", " + q.queryString() + ")";
     }
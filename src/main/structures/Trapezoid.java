@@ -2,36 +2,40 @@ package main.structures;
 
 import main.structures.DCEL.Face;
 import main.structures.DCEL.Vertex;
-import main.structures.search.LeafNode;
-
-import java.util.ArrayList;
-import java.util.List;
+import main.structures.search.Node;
 
 public class Trapezoid {
 
-    public Vertex leftp;
-    public Vertex rightp;
-    public Segment top;
-    public Segment bottom;
-    public String name;
+    public int no; //Number within its map, in order of creation
+    //Fixed at construction, so a query that reaches the trapezoid through a neighbor slot
+    //written by a concurrent update sees them without a lock
+    public final Vertex leftp;
+    public final Vertex rightp;
+    public final Segment top;
+    public final Segment bottom;
     public Face containingFace;
-    public List<Trapezoid> leftNeighbors = new ArrayList<>();
-    public List<Trapezoid> rightNeighbors = new ArrayList<>();
-    public LeafNode node;
+    //Neighbors share a vertical extension with the trapezoid, at most two on each side. A side
+    //with one neighbor has it in the lower slot, the upper slot is null then
+    public Trapezoid lowerLeft;
+    public Trapezoid upperLeft;
+    public Trapezoid lowerRight;
+    public Trapezoid upperRight;
+    public Node node; //Its leaf in the search structure
+    Trapezoid prev; //Links of the TrapezoidList holding the live trapezoids
+    Trapezoid next;
+    volatile TrapezoidList list; //The list holding it, null if none. Read by queries to tell a live trapezoid
 
     public Trapezoid(Vertex leftp, Vertex rightp, Segment top, Segment bottom, int no) {
+        this.no = no;
         this.leftp = leftp;
         this.rightp = rightp;
         this.top = top;
         this.bottom = bottom;
-        this.name = "t" + no;
     }
 
-    public Trapezoid(Vertex leftp, Vertex rightp, Segment top, Segment bottom) {
-        this.leftp = leftp;
-        this.rightp = rightp;
-        this.top = top;
-        this.bottom = bottom;
+    //t<no>. Built on every call, only for printing
+    public String name(){
+        return "t" + no;
     }
 
     public String queryString(){
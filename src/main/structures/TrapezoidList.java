@@ -0,0 +1,94 @@
+package main.structures;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+//The live trapezoids of a map, kept as an intrusive doubly linked list through
+//Trapezoid.prev/next so adding and removing a trapezoid are constant time. A trapezoid
+//knows the list holding it and can be in only one list at a time
+public class TrapezoidList extends AbstractCollection<Trapezoid> {
+
+    private Trapezoid head;
+    private int size = 0;
+
+    @Override
+    public boolean add(Trapezoid t){
+        if(t.list == this) return false;
+        if(t.list != null) throw new IllegalArgumentException("Trapezoid is in another list");
+        t.list = this;
+        t.next = head;
+        if(head != null){
+            head.prev = t;
+        }
+        head = t;
+        size++;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o){
+        if(!contains(o)) return false;
+        Trapezoid t = (Trapezoid) o;
+        if(t.prev != null){
+            t.prev.next = t.next;
+        }
+        else{
+            head = t.next;
+        }
+        if(t.next != null){
+            t.next.prev = t.prev;
+        }
+        t.prev = null;
+        t.next = null;
+        t.list = null;
+        size--;
+        return true;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c){
+        boolean changed = false;
+        for(Object o: c){
+            changed |= remove(o);
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean contains(Object o){
+        if(!(o instanceof Trapezoid)) return false;
+        return ((Trapezoid) o).list == this;
+    }
+
+    @Override
+    public int size(){
+        return size;
+    }
+
+    @Override
+    public Iterator<Trapezoid> iterator(){
+        return new Iterator<Trapezoid>() {
+            private Trapezoid cur = head;
+            private Trapezoid last; //Returned by next, null once removed
+
+            public boolean hasNext(){
+                return cur != null;
+            }
+
+            public Trapezoid next(){
+                if(cur == null) throw new NoSuchElementException();
+                last = cur;
+                cur = cur.next;
+                return last;
+            }
+
+            public void remove(){
+                if(last == null) throw new IllegalStateException();
+                TrapezoidList.this.remove(last);
+                last = null;
+            }
+        };
+    }
+}
@@ -1,27 +1,352 @@
 package main.structures;
 import main.Query;
+import main.input.TrapMapBuilder;
+import main.metrics.QueryMetrics;
 import main.structures.DCEL.Face;
 import main.structures.DCEL.Vertex;
+import main.structures.search.FlatSearchStructure;
+import main.structures.search.MappedSearchStructure;
 import main.structures.search.QueryResponse;
 import main.structures.search.SearchStructure;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.ArrayList;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 public class TrapezoidMap {
-    public List<Segment> segments = new ArrayList<>();
+    public List<Segment> segments = new ArrayList<>(); //Deleted segments stay here, marked deleted, until the next rebuild
     private List<Vertex> endpoints = new ArrayList<>();
-    public List<Trapezoid> traps = new ArrayList<>();
-    private SearchStructure D;
+    public volatile TrapezoidList traps = new TrapezoidList(); //Replaced by a rebuild, changed in place by insert and delete
+    private volatile SearchStructure D;
+    private volatile FlatSearchStructure frozen;
+    private List<Segment> boundingBox;
+    private Face unbounded;
+    private Map<Long, Vertex> vertexIndex; //Endpoints by coordinates, built on the first insert or delete
+    private Map<Vertex, Integer> degree; //Number of segments ending at each endpoint, built with vertexIndex
+    private int trapezoidCount; //Numbers given to trapezoids so far
+    private Map<Face, Set<Trapezoid>> faceTrapezoids = new HashMap<>(); //Live trapezoids by the face they lie in
+    private Set<Segment> deletedSegments = Collections.newSetFromMap(new IdentityHashMap<>()); //Deleted segments still in segments
+    private static final int BATCH_CHUNK = 4096; //Points located by one task of a batch query
+    private static final float WALK_MARGIN = 0.0001f; //Distance a walked-to point must keep from its trapezoid's sides
+    public Long seed; //Seed of the insertion order, null if segments were inserted in file order
+    public int depth = -1; //Longest search path when the build was accepted, -1 if it wasn't measured
+    public int depthBound = -1; //Longest search path a depth bounded build accepts, -1 if the build wasn't bounded
+    public boolean depthBoundMet = true; //False if no attempt of a depth bounded build met depthBound, depth is then the shallowest
+    public int rebuilds; //Builds a depth bounded build made after its first, met or not
+    public final QueryMetrics metrics = new QueryMetrics(); //Off until enabled, see registerMBean
 
     public TrapezoidMap(SearchStructure D, List<Segment> boundingBox, Trapezoid trapRoot) {
         this.D = D;
+        this.boundingBox = boundingBox;
+        this.unbounded = trapRoot.containingFace;
+        this.trapezoidCount = trapRoot.no + 1;
         traps.add(trapRoot);
+        addToFace(trapRoot);
         segments.addAll(boundingBox);
     }
 
     public QueryResponse query(Query q){
+        if(metrics.isEnabled()){
+            QueryResponse response = new QueryResponse();
+            return locateMeasured(q.x, q.y, response) ? response : null;
+        }
+        if(frozen != null) return frozen.query(q);
         return D.query(q);
     }
 
+    //Allocation free point location. Fills response and returns false if (x, y) is outside the bounding box
+    public boolean locate(float x, float y, QueryResponse response){
+        if(metrics.isEnabled()) return locateMeasured(x, y, response);
+        if(frozen != null) return frozen.locate(x, y, response);
+        return D.locate(x, y, response);
+    }
+
+    //locate through the instrumented descents, kept out of locate so the disabled path stays small enough to inline
+    private boolean locateMeasured(float x, float y, QueryResponse response){
+        long start = System.nanoTime();
+        FlatSearchStructure flat = frozen;
+        boolean inside = flat != null ? flat.locate(x, y, response, metrics) : D.locate(x, y, response, metrics);
+        metrics.latency.record(System.nanoTime() - start);
+        return inside;
+    }
+
+    //Records the outcome of a depth bounded build of this map, here and in metrics
+    public void boundDepth(int bound, int rebuilds){
+        depthBound = bound;
+        depthBoundMet = depth <= bound;
+        this.rebuilds = rebuilds;
+        metrics.build(depth, bound, rebuilds);
+    }
+
+    //Exposes metrics as the MBean main:type=TrapezoidMap,name=<name> on the platform MBean server,
+    //where they can be switched on and off with the Enabled attribute and reset
+    public void registerMBean(String name){
+        try{
+            ObjectName objectName = new ObjectName("main:type=TrapezoidMap,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, objectName);
+        }
+        catch(JMException e){
+            throw new IllegalArgumentException("Cannot register metrics of " + name, e);
+        }
+    }
+
+    //Locates (xs[i], ys[i]) for every i and stores the answer in responses[i], or null if the point
+    //is outside the bounding box. Responses already in the array are reused. The points are split
+    //into chunks that are located in parallel on the common fork/join pool, which is safe because
+    //queries never modify the map
+    public void query(float[] xs, float[] ys, QueryResponse[] responses){
+        if(xs.length != ys.length || responses.length < xs.length)
+            throw new IllegalArgumentException("Coordinate and response arrays must have matching lengths");
+
+        int chunks = (xs.length + BATCH_CHUNK - 1) / BATCH_CHUNK;
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int end = Math.min(xs.length, (c + 1) * BATCH_CHUNK);
+            for(int i = c * BATCH_CHUNK; i < end; i++){
+                QueryResponse response = responses[i] != null ? responses[i] : new QueryResponse();
+                responses[i] = locate(xs[i], ys[i], response) ? response : null;
+            }
+        });
+    }
+
+    //Answers the same as query(xs, ys, responses) but for large, spatially coherent batches.
+    //The points are swept in order of x, split into horizontal bands so that consecutive points of
+    //a band are close together. Each point is found by walking right through the neighbors of the
+    //trapezoid of the band's previous point, and the search structure is only descended when the
+    //walk would take longer than a descent or leaves the trapezoids it can reach.
+    //The walks take no lock. They may read neighbor slots halfway through a concurrent insert or
+    //delete, so a walk only answers a trapezoid that is still live and has the point well inside it,
+    //which is what a descent would answer as well. Any other walk falls back to the descent
+    public void querySorted(float[] xs, float[] ys, QueryResponse[] responses){
+        if(xs.length != ys.length || responses.length < xs.length)
+            throw new IllegalArgumentException("Coordinate and response arrays must have matching lengths");
+        if(xs.length == 0) return;
+
+        // Sort the point indices by x, packed with the x bits in the upper half of a long
+        long[] order = new long[xs.length];
+        float minY = Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        for(int i = 0; i < xs.length; i++){
+            int bits = Float.floatToIntBits(xs[i]);
+            bits ^= (bits >> 31) & 0x7fffffff;
+            order[i] = ((long) bits << 32) | i;
+            minY = Math.min(minY, ys[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+        Arrays.sort(order);
+
+        // About as many bands as there are trapezoids stacked on top of each other
+        int bands = (int) Math.min(xs.length, 2 * Math.sqrt(traps.size()) + 1);
+        float bandScale = maxY > minY ? bands / (maxY - minY) : 0;
+        Trapezoid[] cur = new Trapezoid[bands];
+        float[] lastX = new float[bands];
+        float[] lastY = new float[bands];
+        int maxWalk = 32 - Integer.numberOfLeadingZeros(traps.size());
+
+        for(long key: order){
+            int i = (int) key;
+            float x = xs[i];
+            float y = ys[i];
+            int band = Math.min(bands - 1, Math.max(0, (int) ((y - minY) * bandScale)));
+            QueryResponse response = responses[i] != null ? responses[i] : new QueryResponse();
+
+            Trapezoid found = cur[band] == null ? null : walk(cur[band], lastX[band], lastY[band], x, y, maxWalk);
+            if(found != null){
+                response.set(found);
+            }
+            else if(!locate(x, y, response)){
+                responses[i] = null;
+                continue;
+            }
+            else if(response.t != null && inside(response.t, x, y)){
+                found = response.t;
+            }
+            responses[i] = response;
+            if(found != null){
+                cur[band] = found;
+                lastX[band] = x;
+                lastY[band] = y;
+            }
+        }
+    }
+
+    //Follows the line from (fromX, fromY) to (x, y) through right neighbors, starting in t.
+    //Returns the live trapezoid that has (x, y) well inside it, or null if it can't be reached in
+    //maxWalk steps. Each slot is read once, as an update may rewrite it between two reads
+    private Trapezoid walk(Trapezoid t, float fromX, float fromY, float x, float y, int maxWalk){
+        for(int steps = 0; x >= t.rightp.x - WALK_MARGIN; steps++){
+            if(steps == maxWalk) return null;
+            Vertex r = t.rightp;
+            float wy = fromX == x ? fromY : fromY + (y - fromY) * (r.x - fromX) / (x - fromX);
+            Trapezoid upper = t.upperRight;
+            Trapezoid lower = t.lowerRight;
+            Trapezoid next = upper != null && wy > r.y ? upper : lower;
+            if(next == null) return null;
+            t = next;
+        }
+        return inside(t, x, y) && traps.contains(t) ? t : null;
+    }
+
+    //Whether (x, y) is inside t and far enough from its sides that a descent of the search
+    //structure can't answer a vertex, a segment or a different trapezoid for it
+    private boolean inside(Trapezoid t, float x, float y){
+        if(x < t.leftp.x + WALK_MARGIN || x > t.rightp.x - WALK_MARGIN) return false;
+        return y < yAt(t.top, x) - WALK_MARGIN && y > yAt(t.bottom, x) + WALK_MARGIN;
+    }
+
+    private float yAt(Segment s, float x){
+        return (float) (s.slope * (x - s.p.x) + s.p.y);
+    }
+
+    //Adds s to the built map, updating only the trapezoids it crosses and their leaves in the
+    //search structure, in O(k + log n) expected time instead of a rebuild. s must lie strictly inside
+    //the bounding box, not touching its sides, and must not cross an existing segment. Its number must
+    //not be negative, as the sides of the box are numbered -1 to -4. Endpoints with the coordinates of an
+    //existing vertex are replaced by that vertex. Descents and sorted batches may run concurrently
+    //with insert, but a frozen copy of the search structure is dropped and has to be made again
+    //with freeze()
+    public synchronized void insert(Segment s){
+        if(!D.strictlyInsideBoundingBox(s.p.x, s.p.y) || !D.strictlyInsideBoundingBox(s.q.x, s.q.y))
+            throw new IllegalArgumentException("Segment " + s + " is not strictly inside the bounding box");
+        if(s.no < 0)
+            throw new IllegalArgumentException("Segment " + s + " has a negative number, which only the sides of the bounding box have");
+        if(s.p.x == s.q.x && s.p.y == s.q.y)
+            throw new IllegalArgumentException("Segment " + s + " has no length");
+
+        indexEndpoints();
+        s.p = vertexIndex.computeIfAbsent(coordinateKey(s.p), k -> s.p);
+        s.q = vertexIndex.computeIfAbsent(coordinateKey(s.q), k -> s.q);
+
+        // A segment between two existing vertices may already be in the map
+        Trapezoid afterP = D.segmentQuery(s, s.p, true);
+        if((afterP.bottom.p == s.p && afterP.bottom.q == s.q) || (afterP.top.p == s.p && afterP.top.q == s.q))
+            throw new IllegalArgumentException("Segment " + s + " is already in the map");
+
+        if(!deletedSegments.remove(s)) segments.add(s); //A deleted segment still listed is revived where it is
+        degree.merge(s.p, 1, Integer::sum);
+        degree.merge(s.q, 1, Integer::sum);
+        s.p.deleted = false;
+        s.q.deleted = false;
+        s.deleted = false;
+        frozen = null;
+        TrapMapBuilder.insertSegment(this, D, s);
+    }
+
+    //Removes s from the map. The trapezoids above and below s merge, and so do those on both
+    //sides of an endpoint no other segment uses. Only the leaves of the merged trapezoids are
+    //replaced in the search structure, in O(k log k + log n) expected time for the k trapezoids
+    //next to s. The nodes that tested s stay behind as plain splits, so once half of the segments
+    //have been deleted the map is rebuilt from the remaining ones, which is O(log n) amortized per
+    //deletion. s and a removed endpoint are marked deleted before any leaf is replaced, so a
+    //descent that reaches a new leaf no longer answers them. Descents and sorted batches may run
+    //concurrently with delete, a frozen copy is dropped as with insert
+    public synchronized void delete(Segment s){
+        if(s.deleted || boundingBox.contains(s) || D.trapezoidNextTo(s, true).bottom != s)
+            throw new IllegalArgumentException("Segment " + s + " is not in the map");
+
+        indexEndpoints();
+        boolean pRemoved = degree.merge(s.p, -1, Integer::sum) == 0;
+        boolean qRemoved = degree.merge(s.q, -1, Integer::sum) == 0;
+        s.deleted = true;
+        s.p.deleted = pRemoved;
+        s.q.deleted = qRemoved;
+
+        frozen = null;
+        TrapMapBuilder.deleteSegment(this, D, s, pRemoved, qRemoved);
+
+        deletedSegments.add(s);
+        if(deletedSegments.size() * 2 > segments.size()) rebuild();
+    }
+
+    //Replaces the search structure and trapezoids with a fresh randomized build of the live segments
+    private void rebuild(){
+        List<Segment> live = new ArrayList<>();
+        for(Segment e: segments){
+            if(!e.deleted && !boundingBox.contains(e)) live.add(e);
+        }
+        TrapezoidMap fresh = TrapMapBuilder.buildTrapMap(boundingBox, unbounded, live, new Random(seed == null ? live.size() : seed).nextLong());
+        segments = fresh.segments;
+        traps = fresh.traps;
+        faceTrapezoids = fresh.faceTrapezoids;
+        trapezoidCount = fresh.trapezoidCount;
+        seed = fresh.seed;
+        depth = -1;
+        depthBound = -1;
+        depthBoundMet = true;
+        rebuilds = 0;
+        metrics.build(-1, -1, 0);
+        deletedSegments.clear();
+        vertexIndex.values().removeIf(v -> v.deleted);
+        degree.keySet().removeIf(v -> v.deleted);
+        D = fresh.D;
+    }
+
+    //The live trapezoids of this map lying in f, each map keeps its own so several maps can be built
+    //from one DCEL. Changed in place by insert and delete, like traps
+    public Set<Trapezoid> trapezoids(Face f){
+        Set<Trapezoid> in = faceTrapezoids.get(f);
+        return in == null ? Collections.emptySet() : Collections.unmodifiableSet(in);
+    }
+
+    //Number for the next trapezoid the builder creates in this map, numbers run from 0
+    public int nextTrapezoidNo(){
+        return trapezoidCount++;
+    }
+
+    //Kept up to date by TrapMapBuilder as it labels trapezoids and replaces them
+    public void addToFace(Trapezoid t){
+        if(t.containingFace != null) faceTrapezoids.computeIfAbsent(t.containingFace, f -> new HashSet<>()).add(t);
+    }
+
+    public void removeFromFace(Trapezoid t){
+        Set<Trapezoid> in = t.containingFace == null ? null : faceTrapezoids.get(t.containingFace);
+        if(in != null && in.remove(t) && in.isEmpty()) faceTrapezoids.remove(t.containingFace);
+    }
+
+    private void indexEndpoints(){
+        if(vertexIndex != null) return;
+        vertexIndex = new HashMap<>();
+        degree = new HashMap<>();
+        for(Segment e: segments){
+            vertexIndex.putIfAbsent(coordinateKey(e.p), e.p);
+            vertexIndex.putIfAbsent(coordinateKey(e.q), e.q);
+            degree.merge(e.p, 1, Integer::sum);
+            degree.merge(e.q, 1, Integer::sum);
+        }
+    }
+
+    private static long coordinateKey(Vertex v){
+        return ((long) Float.floatToIntBits(v.x) << 32) | (Float.floatToIntBits(v.y) & 0xffffffffL);
+    }
+
+    //Longest search path of the current search structure
+    public int depth(){
+        return D.depth();
+    }
+
+    //Writes a snapshot of the map that MappedSearchStructure.open can query without rebuilding it
+    public void writeSnapshot(Path file) throws IOException {
+        FlatSearchStructure flat = frozen;
+        MappedSearchStructure.write(flat != null ? flat : D.freeze(), file);
+    }
+
+    //Answers all further queries from an array based copy of the search structure.
+    //Call once the map is fully built
+    public void freeze(){
+        frozen = D.freeze();
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,224 @@
+package main.structures.search;
+
+import main.Query;
+import main.metrics.QueryMetrics;
+import main.structures.DCEL.Vertex;
+import main.structures.Segment;
+import main.structures.Trapezoid;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+//A read-only copy of a SearchStructure laid out in a single int array. Every internal node takes
+//STRIDE consecutive ints: its kind, both children and the coordinates it tests against (stored as
+//float bits), so a step of the descent touches one cache line and never follows an object reference.
+//Nodes are numbered in depth-first order so a left child usually sits right after its parent.
+//It answers exactly what SearchStructure.query answers for the DAG it was built from.
+public class FlatSearchStructure {
+
+    static final int X = 0;
+    static final int Y = 1;
+    static final int Y_VERTICAL = 2;
+    static final int KIND = 3;
+    // Flags or'ed into the kind for vertices and segments deleted from the map, which only split
+    static final int NO_P = 4; // The vertex of an XNode or p of a YNode
+    static final int NO_Q = 8;
+    static final int NO_SEGMENT = 16;
+    static final int STRIDE = 8;
+
+    // kind, lChild, rChild, then the XNode vertex (x, y) or the YNode segment (p.x, p.y, q.x, q.y), the last int is unused
+    // A child >= 0 is a node index, a child < 0 is the leaf of trapezoid -child - 1
+    final int[] nodes;
+    final Object[] refs; // The Vertex of an XNode or the Segment of a YNode
+    final Trapezoid[] trapezoids;
+    final int root;
+
+    final float left;
+    final float right;
+    final float top;
+    final float bottom;
+    final float epsilon;
+
+    FlatSearchStructure(Node rootNode, float left, float right, float top, float bottom, float epsilon){
+        this.left = left;
+        this.right = right;
+        this.top = top;
+        this.bottom = bottom;
+        this.epsilon = epsilon;
+
+        // Number the nodes and leaves in depth-first order
+        Map<Node, Integer> index = new IdentityHashMap<>();
+        Deque<Node> stack = new ArrayDeque<>();
+        int nodeCount = 0;
+        int leafCount = 0;
+        stack.push(rootNode);
+        while(!stack.isEmpty()){
+            Node n = stack.pop();
+            if(index.containsKey(n)) continue;
+            if(n.key instanceof Trapezoid){
+                index.put(n, -(++leafCount));
+            }
+            else{
+                index.put(n, nodeCount++);
+                stack.push(n.rChild);
+                stack.push(n.lChild);
+            }
+        }
+
+        nodes = new int[nodeCount * STRIDE];
+        refs = new Object[nodeCount];
+        trapezoids = new Trapezoid[leafCount];
+        for(Map.Entry<Node, Integer> e: index.entrySet()){
+            Node n = e.getKey();
+            int i = e.getValue();
+            Object key = n.key;
+            if(key instanceof Trapezoid){
+                trapezoids[-i - 1] = (Trapezoid) key;
+                continue;
+            }
+            int o = i * STRIDE;
+            nodes[o + 1] = index.get(n.lChild);
+            nodes[o + 2] = index.get(n.rChild);
+            if(key instanceof Vertex){
+                Vertex v = (Vertex) key;
+                nodes[o] = X | (v.deleted ? NO_P : 0);
+                nodes[o + 3] = Float.floatToRawIntBits(v.x);
+                nodes[o + 4] = Float.floatToRawIntBits(v.y);
+                refs[i] = v;
+            }
+            else{
+                Segment s = (Segment) key;
+                nodes[o] = (s.vertical ? Y_VERTICAL : Y)
+                        | (s.p.deleted ? NO_P : 0) | (s.q.deleted ? NO_Q : 0) | (s.deleted ? NO_SEGMENT : 0);
+                nodes[o + 3] = Float.floatToRawIntBits(s.p.x);
+                nodes[o + 4] = Float.floatToRawIntBits(s.p.y);
+                nodes[o + 5] = Float.floatToRawIntBits(s.q.x);
+                nodes[o + 6] = Float.floatToRawIntBits(s.q.y);
+                refs[i] = s;
+            }
+        }
+        root = index.get(rootNode);
+    }
+
+    public QueryResponse query(Query q){
+        QueryResponse response = new QueryResponse();
+        return locate(q.x, q.y, response) ? response : null;
+    }
+
+    //Allocation free version of query, see SearchStructure.locate
+    public boolean locate(float x, float y, QueryResponse response){
+        if(x < left || y > top || y < bottom || x > right) return false;
+
+        int[] nodes = this.nodes;
+        int cur = root;
+        while(cur >= 0){
+            int o = cur * STRIDE;
+            int flags = nodes[o];
+            int kind = flags & KIND;
+            if(kind == X){
+                // Lexicographic like SearchStructure.rightOf, and the vertical YNodes below rely on it
+                float vx = Float.intBitsToFloat(nodes[o + 3]);
+                float vy = Float.intBitsToFloat(nodes[o + 4]);
+                if((flags & NO_P) == 0 && Math.abs(vx - x) < epsilon && Math.abs(vy - y) < epsilon)
+                    return response.set((Vertex) refs[cur]);
+                cur = (x > vx || (x == vx && y > vy)) ? nodes[o + 2] : nodes[o + 1];
+            }
+            else{
+                float px = Float.intBitsToFloat(nodes[o + 3]);
+                float py = Float.intBitsToFloat(nodes[o + 4]);
+                float qx = Float.intBitsToFloat(nodes[o + 5]);
+                float qy = Float.intBitsToFloat(nodes[o + 6]);
+                if((flags & NO_P) == 0 && Math.abs(px - x) < epsilon && Math.abs(py - y) < epsilon)
+                    return response.set(((Segment) refs[cur]).p);
+                if((flags & NO_Q) == 0 && Math.abs(qx - x) < epsilon && Math.abs(qy - y) < epsilon)
+                    return response.set(((Segment) refs[cur]).q);
+                boolean live = (flags & NO_SEGMENT) == 0;
+                boolean below;
+                if(kind == Y_VERTICAL){
+                    if(live && Math.abs(x - px) < epsilon && y < qy && y > py)
+                        return response.set((Segment) refs[cur]);
+                    below = x > px;
+                }
+                else{
+                    // The same determinant as SearchStructure.below, Segment.dx and dy are these differences
+                    double dx = (double) qx - px;
+                    double det = dx * ((double) y - py) - ((double) qy - py) * ((double) x - px);
+                    if(live && Math.abs(det) < epsilon * dx)
+                        return response.set((Segment) refs[cur]);
+                    below = det < 0;
+                }
+                cur = below ? nodes[o + 2] : nodes[o + 1];
+            }
+        }
+        return response.set(trapezoids[-cur - 1]);
+    }
+
+    //locate that also records the descent into metrics, see SearchStructure.locate
+    public boolean locate(float x, float y, QueryResponse response, QueryMetrics metrics){
+        if(x < left || y > top || y < bottom || x > right){
+            metrics.exit(QueryMetrics.OUTSIDE, 0);
+            return false;
+        }
+
+        int[] nodes = this.nodes;
+        int cur = root;
+        int depth = 0;
+        while(cur >= 0){
+            depth++;
+            int o = cur * STRIDE;
+            int flags = nodes[o];
+            int kind = flags & KIND;
+            if(kind == X){
+                float vx = Float.intBitsToFloat(nodes[o + 3]);
+                float vy = Float.intBitsToFloat(nodes[o + 4]);
+                if((flags & NO_P) == 0 && Math.abs(vx - x) < epsilon && Math.abs(vy - y) < epsilon){
+                    metrics.exit(QueryMetrics.X_VERTEX, depth);
+                    return response.set((Vertex) refs[cur]);
+                }
+                cur = (x > vx || (x == vx && y > vy)) ? nodes[o + 2] : nodes[o + 1];
+            }
+            else{
+                float px = Float.intBitsToFloat(nodes[o + 3]);
+                float py = Float.intBitsToFloat(nodes[o + 4]);
+                float qx = Float.intBitsToFloat(nodes[o + 5]);
+                float qy = Float.intBitsToFloat(nodes[o + 6]);
+                if((flags & NO_P) == 0 && Math.abs(px - x) < epsilon && Math.abs(py - y) < epsilon){
+                    metrics.exit(QueryMetrics.Y_VERTEX, depth);
+                    return response.set(((Segment) refs[cur]).p);
+                }
+                if((flags & NO_Q) == 0 && Math.abs(qx - x) < epsilon && Math.abs(qy - y) < epsilon){
+                    metrics.exit(QueryMetrics.Y_VERTEX, depth);
+                    return response.set(((Segment) refs[cur]).q);
+                }
+                boolean live = (flags & NO_SEGMENT) == 0;
+                boolean below;
+                if(kind == Y_VERTICAL){
+                    if(live && Math.abs(x - px) < epsilon && y < qy && y > py){
+                        metrics.exit(QueryMetrics.SEGMENT, depth);
+                        return response.set((Segment) refs[cur]);
+                    }
+                    below = x > px;
+                }
+                else{
+                    // The same determinant as SearchStructure.below, Segment.dx and dy are these differences
+                    double dx = (double) qx - px;
+                    double det = dx * ((double) y - py) - ((double) qy - py) * ((double) x - px);
+                    if(live && Math.abs(det) < epsilon * dx){
+                        metrics.exit(QueryMetrics.SEGMENT, depth);
+                        return response.set((Segment) refs[cur]);
+                    }
+                    below = det < 0;
+                }
+                cur = below ? nodes[o + 2] : nodes[o + 1];
+            }
+        }
+        metrics.exit(QueryMetrics.LEAF, depth);
+        return response.set(trapezoids[-cur - 1]);
+    }
+
+    public int size(){
+        return refs.length;
+    }
+}
@@ -0,0 +1,335 @@
+package main.structures.search;
+
+import main.structures.DCEL.Face;
+import main.structures.DCEL.Vertex;
+import main.structures.Segment;
+import main.structures.Trapezoid;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+//A snapshot of a built map in a file that is queried straight from its memory mapped bytes.
+//Opening one only maps the file, so startup doesn't depend on the size of the map, and all
+//processes mapping the same file share one copy of it in the page cache.
+//
+//The file holds a header followed by five tables, all little endian ints:
+//  nodes       NODE_INTS per node: the FlatSearchStructure node layout followed by the index of
+//              the node's vertex (XNode) or segment (YNode)
+//  trapezoids  leftp, rightp, top, bottom, face, Trapezoid.no
+//  segments    p, q, Segment.no
+//  vertices    x and y as float bits, Vertex.no negated for the corners of the bounding box
+//  faces       name
+//and a string table of the face names: stringCount + 1 offsets and then the UTF-8 bytes. A
+//missing face or name is -1. Nothing is turned into objects: locate answers with an index into
+//these tables, whose number and text are read from the mapped bytes. Snapshots are limited to
+//2GB, about 50 million nodes
+public class MappedSearchStructure {
+
+    // Kinds of answer of locate(x, y)
+    public static final int TRAPEZOID = 0;
+    public static final int SEGMENT = 1;
+    public static final int VERTEX = 2;
+
+    private static final int MAGIC = 0x50414d54; // "TMAP"
+    private static final int VERSION = 4;
+    private static final int HEADER = 64;
+    private static final int NODE_INTS = FlatSearchStructure.STRIDE + 1;
+    private static final int TRAPEZOID_INTS = 6;
+    private static final int SEGMENT_INTS = 3;
+    private static final int VERTEX_INTS = 3;
+
+    private final ByteBuffer map;
+    private final int root;
+    private final float left;
+    private final float right;
+    private final float top;
+    private final float bottom;
+    private final float epsilon;
+    private final int trapezoidStart;
+    private final int segmentStart;
+    private final int vertexStart;
+    private final int faceStart;
+    private final int stringStart;
+    private final int stringBytes;
+
+    private MappedSearchStructure(ByteBuffer map) throws IOException {
+        this.map = map.order(ByteOrder.LITTLE_ENDIAN);
+        if(map.getInt(0) != MAGIC || map.getInt(4) != VERSION) throw new IOException("Not a trapezoid map snapshot");
+        int nodeCount = map.getInt(8);
+        int trapezoidCount = map.getInt(12);
+        int segmentCount = map.getInt(16);
+        int vertexCount = map.getInt(20);
+        int faceCount = map.getInt(24);
+        root = map.getInt(28);
+        left = map.getFloat(32);
+        right = map.getFloat(36);
+        top = map.getFloat(40);
+        bottom = map.getFloat(44);
+        epsilon = map.getFloat(48);
+        int stringCount = map.getInt(52);
+
+        trapezoidStart = HEADER + nodeCount * NODE_INTS * 4;
+        segmentStart = trapezoidStart + trapezoidCount * TRAPEZOID_INTS * 4;
+        vertexStart = segmentStart + segmentCount * SEGMENT_INTS * 4;
+        faceStart = vertexStart + vertexCount * VERTEX_INTS * 4;
+        stringStart = faceStart + faceCount * 4;
+        stringBytes = stringStart + (stringCount + 1) * 4;
+    }
+
+    public static MappedSearchStructure open(Path file) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            if(channel.size() > Integer.MAX_VALUE) throw new IOException("Snapshot larger than 2GB");
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedSearchStructure(map);
+        }
+    }
+
+    //Writes the map behind flat to file, see the class comment for the layout
+    public static void write(FlatSearchStructure flat, Path file) throws IOException {
+        Map<Vertex, Integer> vertices = new IdentityHashMap<>();
+        Map<Segment, Integer> segments = new IdentityHashMap<>();
+        Map<Face, Integer> faces = new IdentityHashMap<>();
+        List<String> strings = new ArrayList<>();
+        for(Object ref: flat.refs){
+            if(ref instanceof Vertex) vertices.putIfAbsent((Vertex) ref, vertices.size());
+            else id(segments, vertices, (Segment) ref);
+        }
+        for(Trapezoid t: flat.trapezoids){
+            vertices.putIfAbsent(t.leftp, vertices.size());
+            vertices.putIfAbsent(t.rightp, vertices.size());
+            id(segments, vertices, t.top);
+            id(segments, vertices, t.bottom);
+            if(t.containingFace != null) faces.putIfAbsent(t.containingFace, faces.size());
+        }
+
+        int nodeCount = flat.refs.length;
+        int size = HEADER + 4 * (nodeCount * NODE_INTS + flat.trapezoids.length * TRAPEZOID_INTS
+                + segments.size() * SEGMENT_INTS + vertices.size() * VERTEX_INTS + faces.size());
+        ByteBuffer out = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(VERSION).putInt(nodeCount).putInt(flat.trapezoids.length)
+                .putInt(segments.size()).putInt(vertices.size()).putInt(faces.size()).putInt(flat.root)
+                .putFloat(flat.left).putFloat(flat.right).putFloat(flat.top).putFloat(flat.bottom).putFloat(flat.epsilon);
+        int stringCountAt = out.position();
+        out.position(HEADER);
+
+        for(int i = 0; i < nodeCount; i++){
+            for(int j = 0; j < FlatSearchStructure.STRIDE; j++){
+                out.putInt(flat.nodes[i * FlatSearchStructure.STRIDE + j]);
+            }
+            Object ref = flat.refs[i];
+            out.putInt(ref instanceof Vertex ? vertices.get(ref) : segments.get(ref));
+        }
+        for(Trapezoid t: flat.trapezoids){
+            out.putInt(vertices.get(t.leftp)).putInt(vertices.get(t.rightp))
+                    .putInt(segments.get(t.top)).putInt(segments.get(t.bottom))
+                    .putInt(t.containingFace == null ? -1 : faces.get(t.containingFace)).putInt(t.no);
+        }
+        for(Segment s: ordered(segments)){
+            out.putInt(vertices.get(s.p)).putInt(vertices.get(s.q)).putInt(s.no);
+        }
+        for(Vertex v: ordered(vertices)){
+            out.putFloat(v.x).putFloat(v.y).putInt(v.corner ? -v.no : v.no);
+        }
+        for(Face f: ordered(faces)){
+            out.putInt(string(strings, f.name));
+        }
+        out.putInt(stringCountAt, strings.size());
+
+        List<byte[]> encoded = new ArrayList<>(strings.size());
+        int offset = 0;
+        ByteBuffer offsets = ByteBuffer.allocate((strings.size() + 1) * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for(String s: strings){
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            encoded.add(bytes);
+            offsets.putInt(offset);
+            offset += bytes.length;
+        }
+        offsets.putInt(offset);
+
+        out.flip();
+        offsets.flip();
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)){
+            while(out.hasRemaining()) channel.write(out);
+            while(offsets.hasRemaining()) channel.write(offsets);
+            for(byte[] bytes: encoded){
+                ByteBuffer b = ByteBuffer.wrap(bytes);
+                while(b.hasRemaining()) channel.write(b);
+            }
+        }
+    }
+
+    private static void id(Map<Segment, Integer> segments, Map<Vertex, Integer> vertices, Segment s){
+        if(segments.putIfAbsent(s, segments.size()) == null){
+            vertices.putIfAbsent(s.p, vertices.size());
+            vertices.putIfAbsent(s.q, vertices.size());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> ordered(Map<T, Integer> ids){
+        Object[] byId = new Object[ids.size()];
+        for(Map.Entry<T, Integer> e: ids.entrySet()) byId[e.getValue()] = e.getKey();
+        List<T> list = new ArrayList<>(byId.length);
+        for(Object o: byId) list.add((T) o);
+        return list;
+    }
+
+    private static int string(List<String> strings, String s){
+        if(s == null) return -1;
+        strings.add(s);
+        return strings.size() - 1;
+    }
+
+    //Allocation free point location. Returns -1 outside the bounding box, otherwise the index of
+    //the trapezoid, segment or vertex containing (x, y) shifted left by two, or'ed with its kind. Decides as
+    //FlatSearchStructure.locate does, XNodes in lexicographic order
+    public int locate(float x, float y){
+        if(x < left || y > top || y < bottom || x > right) return -1;
+
+        ByteBuffer map = this.map;
+        int cur = root;
+        while(cur >= 0){
+            int o = HEADER + cur * NODE_INTS * 4;
+            int flags = map.getInt(o);
+            int ref = map.getInt(o + 32);
+            if((flags & FlatSearchStructure.KIND) == FlatSearchStructure.X){
+                float vx = map.getFloat(o + 12);
+                float vy = map.getFloat(o + 16);
+                if((flags & FlatSearchStructure.NO_P) == 0 && Math.abs(vx - x) < epsilon && Math.abs(vy - y) < epsilon)
+                    return ref << 2 | VERTEX;
+                cur = (x > vx || (x == vx && y > vy)) ? map.getInt(o + 8) : map.getInt(o + 4);
+            }
+            else{
+                float px = map.getFloat(o + 12);
+                float py = map.getFloat(o + 16);
+                float qx = map.getFloat(o + 20);
+                float qy = map.getFloat(o + 24);
+                if((flags & FlatSearchStructure.NO_P) == 0 && Math.abs(px - x) < epsilon && Math.abs(py - y) < epsilon)
+                    return map.getInt(segmentStart + ref * SEGMENT_INTS * 4) << 2 | VERTEX;
+                if((flags & FlatSearchStructure.NO_Q) == 0 && Math.abs(qx - x) < epsilon && Math.abs(qy - y) < epsilon)
+                    return map.getInt(segmentStart + ref * SEGMENT_INTS * 4 + 4) << 2 | VERTEX;
+                boolean live = (flags & FlatSearchStructure.NO_SEGMENT) == 0;
+                boolean below;
+                if((flags & FlatSearchStructure.KIND) == FlatSearchStructure.Y_VERTICAL){
+                    if(live && Math.abs(x - px) < epsilon && y < qy && y > py)
+                        return ref << 2 | SEGMENT;
+                    below = x > px;
+                }
+                else{
+                    double dx = (double) qx - px;
+                    double det = dx * ((double) y - py) - ((double) qy - py) * ((double) x - px);
+                    if(live && Math.abs(det) < epsilon * dx)
+                        return ref << 2 | SEGMENT;
+                    below = det < 0;
+                }
+                cur = below ? map.getInt(o + 8) : map.getInt(o + 4);
+            }
+        }
+        return (-cur - 1) << 2 | TRAPEZOID;
+    }
+
+    //The ResponseType of an answer of locate
+    public static ResponseType type(int answer){
+        switch(answer & 3){
+            case VERTEX: return ResponseType.VERTEX;
+            case SEGMENT: return ResponseType.SEGMENT;
+            default: return ResponseType.TRAPEZOID;
+        }
+    }
+
+    //The number of the vertex, segment or trapezoid of an answer of locate, the QueryResponse.id
+    //the map the snapshot was written from answers with
+    public int id(int answer){
+        int i = answer >>> 2;
+        switch(answer & 3){
+            case VERTEX: return map.getInt(vertexStart + i * VERTEX_INTS * 4 + 8);
+            case SEGMENT: return map.getInt(segmentStart + i * SEGMENT_INTS * 4 + 8);
+            default: return map.getInt(trapezoidStart + i * TRAPEZOID_INTS * 4 + 20);
+        }
+    }
+
+    //Appends the QueryResponse.queryString of an answer of locate, read from the mapped bytes
+    public void appendQueryString(int answer, StringBuilder out){
+        int i = answer >>> 2;
+        switch(answer & 3){
+            case VERTEX: appendVertex(i, out); break;
+            case SEGMENT: appendSegment(i, out); break;
+            default:
+                int o = trapezoidStart + i * TRAPEZOID_INTS * 4;
+                appendSegment(map.getInt(o + 8), out);
+                out.append('\n');
+                appendSegment(map.getInt(o + 12), out);
+                out.append('\n');
+                appendVertex(map.getInt(o), out);
+                out.append('\n');
+                appendVertex(map.getInt(o + 4), out);
+        }
+    }
+
+    //Name of the face of an answer of locate, null for a vertex, a segment or a trapezoid without a face
+    public String faceName(int answer){
+        if((answer & 3) != TRAPEZOID) return null;
+        int face = map.getInt(trapezoidStart + (answer >>> 2) * TRAPEZOID_INTS * 4 + 16);
+        return face < 0 ? null : string(map.getInt(faceStart + face * 4));
+    }
+
+    //As Vertex.queryString
+    private void appendVertex(int i, StringBuilder out){
+        int o = vertexStart + i * VERTEX_INTS * 4;
+        int no = map.getInt(o + 8);
+        if(no < 0) out.append('c').append(-no);
+        else out.append('(').append(map.getFloat(o)).append(", ").append(map.getFloat(o + 4)).append(')');
+    }
+
+    //As Segment.queryString
+    private void appendSegment(int i, StringBuilder out){
+        int o = segmentStart + i * SEGMENT_INTS * 4;
+        int no = map.getInt(o + 8);
+        if(no < 0){
+            out.append(Segment.side(no));
+            return;
+        }
+        out.append("( ");
+        appendVertex(map.getInt(o), out);
+        out.append(", ");
+        appendVertex(map.getInt(o + 4), out);
+        out.append(')');
+    }
+
+    //The corners and sides of the bounding box
+    public float left(){
+        return left;
+    }
+
+    public float right(){
+        return right;
+    }
+
+    public float top(){
+        return top;
+    }
+
+    public float bottom(){
+        return bottom;
+    }
+
+    private String string(int i){
+        if(i < 0) return null;
+        int from = map.getInt(stringStart + i * 4);
+        int to = map.getInt(stringStart + i * 4 + 4);
+        byte[] bytes = new byte[to - from];
+        for(int j = 0; j < bytes.length; j++) bytes[j] = map.get(stringBytes + from + j);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -1,11 +1,44 @@
 package main.structures.search;
 
-import java.util.ArrayList;
-import java.util.List;
+import main.structures.DCEL.Vertex;
+import main.structures.Segment;
+import main.structures.Trapezoid;
 
-public abstract class Node {
+//A node of the search structure, told apart by its key: the Vertex an XNode tests, the Segment a
+//YNode tests, or the Trapezoid of a leaf. When its trapezoid is replaced a leaf becomes the root of
+//the replacing subtree in place, so all its parents see the subtree without the leaf knowing them
+public final class Node {
 
+    //Volatile and written after the children, so a concurrent query that reads an internal key
+    //sees the children. Read it once per visit, a leaf may turn into an internal node in between
+    public volatile Object key;
     public Node lChild;
     public Node rChild;
-    public List<Node> parents = new ArrayList<>();
+
+    private Node(Object key){
+        this.key = key;
+    }
+
+    public static Node xNode(Vertex vertex){
+        return new Node(vertex);
+    }
+
+    public static Node yNode(Segment s){
+        return new Node(s);
+    }
+
+    public static Node leaf(Trapezoid trapezoid){
+        return new Node(trapezoid);
+    }
+
+    //Turns this leaf into the internal node subRoot, whose subtree replaces its trapezoid.
+    //subRoot itself is dropped. A leaf can't be replaced by another leaf, the new trapezoid's
+    //node would be two objects
+    public void become(Node subRoot){
+        if(!(key instanceof Trapezoid) || subRoot.key instanceof Trapezoid)
+            throw new IllegalArgumentException("Only a leaf can become an internal node");
+        lChild = subRoot.lChild;
+        rChild = subRoot.rChild;
+        key = subRoot.key;
+    }
 }
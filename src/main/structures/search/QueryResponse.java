@@ -1,5 +1,6 @@
 package main.structures.search;
 
+import main.structures.DCEL.Face;
 import main.structures.DCEL.Vertex;
 import main.structures.Segment;
 import main.structures.Trapezoid;
@@ -10,10 +11,16 @@ public class QueryResponse {
     public Trapezoid t;
     public Segment s;
     public Vertex v;
+    public Face face; //Face containing a point inside a trapezoid, null on a vertex or segment
+
+    //An empty response to be filled, and reused, by SearchStructure.locate
+    public QueryResponse(){
+    }
 
     QueryResponse(ResponseType rt, Trapezoid t){
         this.type = rt;
         this.t = t;
+        this.face = t.containingFace;
     }
     QueryResponse(ResponseType rt, Segment s){
         this.type = rt;
@@ -24,11 +31,50 @@ public class QueryResponse {
         this.v = v;
     }
 
+    public boolean set(Trapezoid t){
+        this.type = ResponseType.TRAPEZOID;
+        this.t = t;
+        this.s = null;
+        this.v = null;
+        this.face = t.containingFace;
+        return true;
+    }
+    public boolean set(Segment s){
+        this.type = ResponseType.SEGMENT;
+        this.t = null;
+        this.s = s;
+        this.v = null;
+        this.face = null;
+        return true;
+    }
+    public boolean set(Vertex v){
+        this.type = ResponseType.VERTEX;
+        this.t = null;
+        this.s = null;
+        this.v = v;
+        this.face = null;
+        return true;
+    }
+
+    //Number of the answer: Vertex.no, negated for a corner of the bounding box, Segment.no, which is
+    //negative for a side of the bounding box, or Trapezoid.no
+    public int id(){
+        switch(type){
+            case VERTEX: return v.corner ? -v.no : v.no;
+            case SEGMENT: return s.no;
+            default: return t.no;
+        }
+    }
+
     public void print(){
+        System.out.println(queryString());
+    }
+
+    public String queryString(){
         switch(type){
-            case VERTEX: System.out.println(v.queryString()); break;
-            case SEGMENT: System.out.println(s.queryString()); break;
-            case TRAPEZOID: System.out.println(t.queryString()); break;
+            case VERTEX: return v.queryString();
+            case SEGMENT: return s.queryString();
+            default: return t.queryString();
         }
     }
 
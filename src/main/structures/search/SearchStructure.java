@@ -1,16 +1,22 @@
 package main.structures.search;
 
 import main.Query;
+import main.metrics.QueryMetrics;
 import main.structures.DCEL.Vertex;
+import main.structures.Predicates;
 import main.structures.Segment;
 import main.structures.Trapezoid;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class SearchStructure {
 
-    private Node root;
+    private final Node root; //Stays the root, it turns into an internal node in place like any leaf
     private Segment l;
     private Segment r;
     private Segment t;
@@ -24,17 +30,27 @@ public class SearchStructure {
         this.t = t;
         this.b = b;
 
-        root = new LeafNode(trapRoot);
+        root = Node.leaf(trapRoot);
+        trapRoot.node = root;
     }
 
     public boolean outSideBoundingBox(Query q){
-        if(q.x < l.p.x) return true;
-        if(q.y > t.p.y) return true;
-        if(q.y < b.p.y) return true;
-        if(q.x > r.p.x) return true;
+        return outSideBoundingBox(q.x, q.y);
+    }
+
+    public boolean outSideBoundingBox(float x, float y){
+        if(x < l.p.x) return true;
+        if(y > t.p.y) return true;
+        if(y < b.p.y) return true;
+        if(x > r.p.x) return true;
         return false;
     }
 
+    //Whether (x, y) is inside the bounding box and on none of its sides
+    public boolean strictlyInsideBoundingBox(float x, float y){
+        return x > l.p.x && x < r.p.x && y > b.p.y && y < t.p.y;
+    }
+
     //Get the list of trapezoids intersected by a segment
     public List<Trapezoid> followSegment(Segment s){
         Trapezoid delta_i = segmentQuery(s, s.p, true);
@@ -45,12 +61,12 @@ public class SearchStructure {
 
         while(delta_i != delta_k){
             //Multiple Neighbors
-            if(delta_i.rightNeighbors.size() > 1 && right_pBelowS(delta_i.rightp, s)){
-                //if rightp p of delta_i is below si, then delta_i+1 is the upper neighbor (position 1 in list)
-                delta_i = delta_i.rightNeighbors.get(1);
+            if(delta_i.upperRight != null && Predicates.below(delta_i.rightp, s)){
+                //if rightp p of delta_i is below si, then delta_i+1 is the upper neighbor
+                delta_i = delta_i.upperRight;
             }
             else{
-                delta_i = delta_i.rightNeighbors.get(0);
+                delta_i = delta_i.lowerRight;
             }
             traps.add(delta_i);
         }
@@ -59,125 +75,214 @@ public class SearchStructure {
     }
 
     public QueryResponse query(Query q){
-        if(outSideBoundingBox(q)) return null;
+        QueryResponse response = new QueryResponse();
+        return locate(q.x, q.y, response) ? response : null;
+    }
+
+    //Allocation free version of query. Writes the answer into response and returns
+    //false, leaving response untouched, if (x, y) is outside the bounding box
+    public boolean locate(float x, float y, QueryResponse response){
+        if(outSideBoundingBox(x, y)) return false;
 
         Node cur = root;
-        while(!(cur instanceof LeafNode)){
-            if(cur instanceof YNode){
-                YNode yCur = (YNode) cur;
-                if(isVertex(yCur.s.p, q))
-                    return new QueryResponse(ResponseType.VERTEX,yCur.s.p);
-                if(isVertex(yCur.s.q, q))
-                    return new QueryResponse(ResponseType.VERTEX,yCur.s.q);
-                if(onSegment(yCur, q))
-                    return new QueryResponse(ResponseType.SEGMENT, ((YNode)cur).s);
-                cur = below((YNode) cur, q) ? cur.rChild : cur.lChild;
-            }
-            else if(cur instanceof XNode){
-                if(isVertex(((XNode) cur).vertex, q))
-                    return new QueryResponse(ResponseType.VERTEX,((XNode)cur).vertex);
-                cur = rightOrOn((XNode) cur, q) ? cur.rChild : cur.lChild;
+        while(true){
+            Object key = cur.key;
+            if(key instanceof Segment){
+                Segment s = (Segment) key;
+                if(!s.p.deleted && isVertex(s.p, x, y))
+                    return response.set(s.p);
+                if(!s.q.deleted && isVertex(s.q, x, y))
+                    return response.set(s.q);
+                if(!s.deleted && onSegment(s, x, y))
+                    return response.set(s);
+                cur = below(s, x, y) ? cur.rChild : cur.lChild;
+            }
+            else if(key instanceof Vertex){
+                Vertex v = (Vertex) key;
+                if(!v.deleted && isVertex(v, x, y))
+                    return response.set(v);
+                cur = rightOf(v, x, y) ? cur.rChild : cur.lChild;
+            }
+            else{
+                return response.set((Trapezoid) key);
             }
         }
-        return new QueryResponse(ResponseType.TRAPEZOID, ((LeafNode) cur).trapezoid);
     }
 
-    private boolean below(YNode node, Query query){
-
-        if(isVertical(node.s.p, node.s.q)){
-            //We know point isn't on line because we onSegment returned false prior
-            if(query.y < node.s.p.y) return true;
+    //locate that also records into metrics how many nodes the descent visited and how it ended.
+    //A copy of locate so the uninstrumented descent stays as it is
+    public boolean locate(float x, float y, QueryResponse response, QueryMetrics metrics){
+        if(outSideBoundingBox(x, y)){
+            metrics.exit(QueryMetrics.OUTSIDE, 0);
             return false;
         }
-        Vertex p = node.s.p;
-        Vertex q = node.s.q;
-        float kx = query.x;
-        float m = (p.y - q.y)/(p.x - q.x);
-        float ky = m * (kx - p.x) + p.y;
-        return query.y < ky;
-    }
 
-    private boolean rightOrOn(XNode node, Query query){
-        return query.x > node.vertex.x || Math.abs(query.x - node.vertex.x) < epsilon;
+        Node cur = root;
+        int depth = 0;
+        while(true){
+            Object key = cur.key;
+            if(key instanceof Segment){
+                depth++;
+                Segment s = (Segment) key;
+                if(!s.p.deleted && isVertex(s.p, x, y)){
+                    metrics.exit(QueryMetrics.Y_VERTEX, depth);
+                    return response.set(s.p);
+                }
+                if(!s.q.deleted && isVertex(s.q, x, y)){
+                    metrics.exit(QueryMetrics.Y_VERTEX, depth);
+                    return response.set(s.q);
+                }
+                if(!s.deleted && onSegment(s, x, y)){
+                    metrics.exit(QueryMetrics.SEGMENT, depth);
+                    return response.set(s);
+                }
+                cur = below(s, x, y) ? cur.rChild : cur.lChild;
+            }
+            else if(key instanceof Vertex){
+                depth++;
+                Vertex v = (Vertex) key;
+                if(!v.deleted && isVertex(v, x, y)){
+                    metrics.exit(QueryMetrics.X_VERTEX, depth);
+                    return response.set(v);
+                }
+                cur = rightOf(v, x, y) ? cur.rChild : cur.lChild;
+            }
+            else{
+                metrics.exit(QueryMetrics.LEAF, depth);
+                return response.set((Trapezoid) key);
+            }
+        }
     }
-    private boolean right(XNode node, Query query){
-        return query.x > node.vertex.x;
+
+    //Sign of the orientation determinant of (x, y) against the segment, no division needed
+    private boolean below(Segment s, float x, float y){
+        if(s.vertical){
+            //Under the symbolic shear a vertical segment leans right going up, so the points right of
+            //its line are below it. The descent only brings points lexicographically between p and q
+            //here, so one on the line is on s unless s was deleted, and both sides then lead to the
+            //trapezoid that replaced those next to s
+            return x > s.p.x;
+        }
+        return s.dx * ((double) y - s.p.y) - s.dy * ((double) x - s.p.x) < 0;
     }
 
-    private boolean isVertex(Vertex v, Query query){
-        return (Math.abs(v.x - query.x) < epsilon && Math.abs(v.y - query.y) < epsilon);
+    //The order the construction splits by, see rightOf below. A point directly above a vertex
+    //lies to its right, one directly below to its left
+    private boolean rightOf(Vertex n, float x, float y){
+        return x > n.x || (x == n.x && y > n.y);
     }
 
-    private boolean onSegment(YNode node, Query query){
+    //Endpoints are ordered lexicographically so vertices sharing an x coordinate still get
+    //distinct vertical extensions. A segment starting at the node's vertex lies to its right,
+    //a segment ending there lies to its left
+    private boolean rightOf(Vertex n, Vertex v, boolean p){
+        if(n == v) return p;
+        return v.x > n.x || (v.x == n.x && v.y > n.y);
+    }
 
-        if(isVertical(node.s.p, node.s.q))
-            if(query.y < node.s.q.y && query.y > node.s.p.y) return true;
+    private boolean isVertex(Vertex v, float x, float y){
+        return (Math.abs(v.x - x) < epsilon && Math.abs(v.y - y) < epsilon);
+    }
 
-        Vertex p = node.s.p;
-        Vertex q = node.s.q;
-        float kx = query.x;
-        float m = (p.y - q.y)/(p.x - q.x);
-        float ky = m * (kx - p.x) + p.y;
-        return Math.abs(query.y - ky) < epsilon;
+    //Within epsilon of the segment vertically, the determinant is dx times the vertical distance.
+    //A vertical segment is within epsilon horizontally, strictly between its endpoints, whose
+    //neighborhoods isVertex answers
+    private boolean onSegment(Segment s, float x, float y){
+        if(s.vertical)
+            return Math.abs(x - s.p.x) < epsilon && y < s.q.y && y > s.p.y;
+        return Math.abs(s.dx * ((double) y - s.p.y) - s.dy * ((double) x - s.p.x)) < epsilon * s.dx;
     }
 
     public Trapezoid segmentQuery(Segment s, Vertex v, boolean p){
-        return segmentQueryNode(s, v, p).trapezoid;
+        return (Trapezoid) segmentQueryNode(s, v, p).key;
     }
 
-    private boolean segmentBelowP(YNode node, Segment s, Vertex v){
-        Segment n = node.s;
-        if(n.p == v){
-            if(isVertical(node.s.p, node.s.q)) return true;
-            if(isVertical(s.p, s.q)) return false;
-            return (s.p.y - s.q.y)/(s.p.x - s.q.x) < (n.p.y - n.q.y)/(n.p.x - n.q.x);
-        }
-        return below(node, new Query(v.x, v.y));
+    //The construction decides exactly with Predicates. Segments starting at v are ordered by the
+    //turn between their directions, a vertical one being the highest
+    private boolean segmentBelowP(Segment n, Segment s, Vertex v){
+        if(n.p == v) return Predicates.turn(n, s) < 0;
+        return Predicates.below(v, n);
     }
 
-    private boolean segmentBelowQ(YNode node, Segment s, Vertex v){
-        Segment n = node.s;
+    private boolean segmentBelowQ(Segment n, Segment s, Vertex v){
         if(n.q == v){
-            if(isVertical(node.s.p, node.s.q)) return true;
-            if(isVertical(s.p, s.q)) return false;
-            return (s.p.y - s.q.y)/(s.p.x - s.q.x) > (n.p.y - n.q.y)/(n.p.x - n.q.x);
+            //A vertical segment ending at v approaches it from below, any other segment ending at v lies above it
+            return Predicates.turn(n, s) > 0;
         }
-        return below(node, new Query(v.x, v.y));
-    }
-
-
-    private boolean right_pBelowS(Vertex p, Segment s){
-        float m = (s.p.y - s.q.y)/(s.p.x - s.q.x);
-        float sy = m * (p.x - s.p.x) + s.p.y;
-        return p.y < sy;
+        return Predicates.below(v, n);
     }
 
-    public LeafNode segmentQueryNode(Segment s, Vertex v, boolean p){
+    //The leaf the search for v ends in. Only called by the thread updating the map, so the
+    //leaf can't turn into an internal node before the caller reads its key
+    public Node segmentQueryNode(Segment s, Vertex v, boolean p){
         Node cur = root;
-        while(!(cur instanceof LeafNode)){
-            if(cur instanceof YNode){
+        while(true){
+            Object key = cur.key;
+            if(key instanceof Segment){
                 if(p)
-                    cur = segmentBelowP((YNode) cur, s, v) ? cur.rChild : cur.lChild;
+                    cur = segmentBelowP((Segment) key, s, v) ? cur.rChild : cur.lChild;
                 else
-                    cur = segmentBelowQ((YNode) cur, s, v) ? cur.rChild : cur.lChild;
+                    cur = segmentBelowQ((Segment) key, s, v) ? cur.rChild : cur.lChild;
             }
-            else if(cur instanceof XNode){
-                //If a q endpoint lies on a vertical extension, we say it lies on the left trapezoid
-                if(p)
-                    cur = rightOrOn(((XNode) cur), new Query(v.x, v.y)) ? cur.rChild : cur.lChild;
-                else
-                    cur = right(((XNode) cur), new Query(v.x, v.y)) ? cur.rChild : cur.lChild;
+            else if(key instanceof Vertex){
+                cur = rightOf((Vertex) key, v, p) ? cur.rChild : cur.lChild;
+            }
+            else{
+                return cur;
             }
         }
-        return ((LeafNode) cur);
     }
 
-    private boolean isVertical(Vertex p, Vertex q){
-        return Math.abs(p.x - q.x) < epsilon;
+    //The trapezoid directly above (or below) s at its left endpoint, for a segment s in the map
+    public Trapezoid trapezoidNextTo(Segment s, boolean above){
+        Node cur = root;
+        while(true){
+            Object key = cur.key;
+            if(key instanceof Segment){
+                boolean below = key == s ? !above : segmentBelowP((Segment) key, s, s.p);
+                cur = below ? cur.rChild : cur.lChild;
+            }
+            else if(key instanceof Vertex){
+                cur = rightOf((Vertex) key, s.p, true) ? cur.rChild : cur.lChild;
+            }
+            else{
+                return (Trapezoid) key;
+            }
+        }
+    }
+
+    //Length of the longest path from the root to a leaf, counted in XNodes and YNodes.
+    //This bounds the number of comparisons any query can take
+    public int depth(){
+        Map<Node, Integer> depths = new IdentityHashMap<>();
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while(!stack.isEmpty()){
+            Node n = stack.peek();
+            if(depths.containsKey(n)){
+                stack.pop();
+            }
+            else if(n.key instanceof Trapezoid){
+                depths.put(n, 0);
+                stack.pop();
+            }
+            else{
+                Integer l = depths.get(n.lChild);
+                Integer r = depths.get(n.rChild);
+                if(l != null && r != null){
+                    depths.put(n, 1 + Math.max(l, r));
+                    stack.pop();
+                }
+                if(l == null) stack.push(n.lChild);
+                if(r == null) stack.push(n.rChild);
+            }
+        }
+        return depths.get(root);
     }
 
-    public void replaceAtRoot(Node n){
-        root = n;
+    //Compiles the current DAG into an array based copy for fast read-only queries
+    public FlatSearchStructure freeze(){
+        return new FlatSearchStructure(root, l.p.x, r.p.x, t.p.y, b.p.y, epsilon);
     }
 
 }
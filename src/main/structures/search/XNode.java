@@ -1,11 +0,0 @@
-package main.structures.search;
-
-import main.structures.DCEL.Vertex;
-
-public class XNode extends Node {
-    public Vertex vertex;
-
-    public XNode(Vertex vertex){
-        this.vertex = vertex;
-    }
-}
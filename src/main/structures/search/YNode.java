@@ -1,11 +0,0 @@
-package main.structures.search;
-
-import main.structures.Segment;
-
-public class YNode extends Node {
-    public Segment s;
-
-    public YNode(Segment s){
-        this.s = s;
-    }
-}
@@ -0,0 +1,74 @@
+package main;
+
+import main.input.DCELByteReader;
+import main.input.DCELGenerator;
+import main.input.TrapMapBuilder;
+import main.structures.TrapezoidMap;
+import main.structures.search.QueryResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class QueryRunnerTest {
+
+    @TempDir
+    Path dir;
+
+    //Trapezoids answer over several lines, so the answers are compared as one text
+    @Test
+    public void bulkModeAnswersEveryLineAsASingleQuery() throws IOException {
+        Path dcel = dir.resolve("grid.txt");
+        DCELGenerator.write(DCELGenerator.Scene.GRID, 1000, 3, dcel);
+        TrapezoidMap map = TrapMapBuilder.buildTrapMap(DCELByteReader.read(dcel), 0);
+
+        Path queries = dir.resolve("queries.txt");
+        StringBuilder expected = new StringBuilder();
+        Random random = new Random(3);
+        try(Writer out = Files.newBufferedWriter(queries, StandardCharsets.UTF_8)){
+            for(int i = 0; i < 5000; i++){
+                float x = random.nextFloat() * 40 - 5;
+                float y = random.nextFloat() * 40 - 5;
+                out.write(i % 2 == 0 ? "(" + x + ", " + y + ")\n" : x + " " + y + "\n");
+                QueryResponse response = map.query(new Query(x, y));
+                expected.append(response == null ? "OUTSIDE BOUNDING BOX" : response.queryString()).append('\n');
+            }
+        }
+
+        Path answers = dir.resolve("answers.txt");
+        QueryRunner.main(new String[]{dcel.toString(), queries.toString(), answers.toString()});
+        assertEquals(expected.toString(), new String(Files.readAllBytes(answers), StandardCharsets.UTF_8));
+        assertTrue(expected.indexOf("OUTSIDE BOUNDING BOX") >= 0);
+    }
+
+    @Test
+    public void answersFromASnapshotAsFromTheBuiltMap() throws IOException {
+        Path dcel = dir.resolve("grid.txt");
+        DCELGenerator.write(DCELGenerator.Scene.GRID, 1000, 3, dcel);
+        Path queries = dir.resolve("queries.txt");
+        Random random = new Random(3);
+        try(Writer out = Files.newBufferedWriter(queries, StandardCharsets.UTF_8)){
+            for(int i = 0; i < 5000; i++) out.write("(" + (random.nextFloat() * 40 - 5) + ", " + (random.nextFloat() * 40 - 5) + ")\n");
+        }
+
+        Path built = dir.resolve("built.txt");
+        QueryRunner.main(new String[]{dcel.toString(), queries.toString(), built.toString()});
+        Path snapshot = dir.resolve("grid.tmap");
+        QueryRunner.main(new String[]{"--write-snapshot", dcel.toString(), snapshot.toString()});
+        Path mapped = dir.resolve("mapped.txt");
+        QueryRunner.main(new String[]{"--snapshot", snapshot.toString(), queries.toString(), mapped.toString()});
+
+        List<String> expected = Files.readAllLines(built, StandardCharsets.UTF_8);
+        assertEquals(expected, Files.readAllLines(mapped, StandardCharsets.UTF_8));
+        assertTrue(expected.contains("OUTSIDE BOUNDING BOX"));
+    }
+}
@@ -0,0 +1,82 @@
+package main;
+
+import main.input.DCELByteReader;
+import main.input.DCELGenerator;
+import main.input.DCELReader;
+import main.structures.DCEL.DCEL;
+import main.structures.DCEL.HalfEdge;
+import main.structures.DCEL.Vertex;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.Scanner;
+
+//Subdivisions for tests: the sample and scenes from DCELGenerator
+public class Scenes {
+
+    private Scenes(){
+    }
+
+    //dcel.txt at the root of the repository. IntelliJ runs the tests there, Maven in core
+    public static Path sampleFile(){
+        Path file = Paths.get("dcel.txt");
+        return Files.exists(file) ? file : Paths.get("..", "dcel.txt");
+    }
+
+    public static DCEL sample(){
+        try(Scanner scanner = new Scanner(sampleFile().toFile())){
+            return new DCELReader(scanner).readDCEL();
+        }
+        catch(FileNotFoundException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //Every vertex and the midpoint of every edge of dcel, then random points around it, some outside
+    //the bounding box a build puts one unit around it. Stored as x, y pairs
+    public static float[] points(DCEL dcel, int random, long seed){
+        float[] xy = new float[2 * (dcel.vertices.size() + dcel.halfEdges.size() + random)];
+        int i = 0;
+        float left = Float.MAX_VALUE, right = -Float.MAX_VALUE, bottom = Float.MAX_VALUE, top = -Float.MAX_VALUE;
+        for(Vertex v: dcel.vertices){
+            xy[i++] = v.x;
+            xy[i++] = v.y;
+            left = Math.min(left, v.x);
+            right = Math.max(right, v.x);
+            bottom = Math.min(bottom, v.y);
+            top = Math.max(top, v.y);
+        }
+        for(HalfEdge e: dcel.halfEdges){
+            xy[i++] = (e.origin.x + e.twin.origin.x) / 2;
+            xy[i++] = (e.origin.y + e.twin.origin.y) / 2;
+        }
+        Random r = new Random(seed);
+        while(i < xy.length){
+            xy[i++] = left - 2 + r.nextFloat() * (right - left + 4);
+            xy[i++] = bottom - 2 + r.nextFloat() * (top - bottom + 4);
+        }
+        return xy;
+    }
+
+    //A scene from DCELGenerator, read back from a temporary file
+    public static DCEL read(DCELGenerator.Scene scene, int edges, long seed){
+        try{
+            Path file = Files.createTempFile("trapezoids-" + scene, ".txt");
+            try{
+                DCELGenerator.write(scene, edges, seed, file);
+                return DCELByteReader.read(file);
+            }
+            finally{
+                Files.delete(file);
+            }
+        }
+        catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+}
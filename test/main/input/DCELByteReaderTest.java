@@ -0,0 +1,125 @@
+package main.input;
+
+import main.Scenes;
+import main.structures.DCEL.DCEL;
+import main.structures.DCEL.Face;
+import main.structures.DCEL.HalfEdge;
+import main.structures.DCEL.Vertex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Scanner;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class DCELByteReaderTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void readsTheSampleAsDCELReaderDoes() throws IOException {
+        assertEquals(dump(Scenes.sample()), dump(DCELByteReader.read(Scenes.sampleFile())));
+    }
+
+    //DCELReader needs the vertices and faces before the half edges, DCELByteReader takes any order
+    @Test
+    public void readsRecordsThatReferToLaterOnes() throws IOException {
+        List<String> lines = new ArrayList<>(Files.readAllLines(Scenes.sampleFile(), StandardCharsets.US_ASCII));
+        Collections.reverse(lines);
+        ByteBuffer reversed = ByteBuffer.wrap(String.join("\n", lines).getBytes(StandardCharsets.US_ASCII));
+        DCEL dcel = DCELByteReader.read(reversed);
+        Collections.reverse(dcel.vertices);
+        Collections.reverse(dcel.faces);
+        Collections.reverse(dcel.halfEdges);
+        //Half edges are numbered in file order, which is reversed here
+        for(int i = 0; i < dcel.halfEdges.size(); i++) dcel.halfEdges.get(i).no = i;
+        assertEquals(dump(Scenes.sample()), dump(dcel));
+    }
+
+    @Test
+    public void readsInParallelAsInOnePass() throws IOException {
+        assertEquals(dump(Scenes.sample()), dump(DCELByteReader.readParallel(Scenes.sampleFile())));
+
+        List<String> lines = new ArrayList<>(Files.readAllLines(Scenes.sampleFile(), StandardCharsets.US_ASCII));
+        Collections.reverse(lines);
+        Path reversed = dir.resolve("reversed.txt");
+        Files.write(reversed, lines, StandardCharsets.US_ASCII);
+        assertEquals(dump(DCELByteReader.read(reversed)), dump(DCELByteReader.readParallel(reversed)));
+    }
+
+    @Test
+    public void readsWhatDCELReaderReads() throws IOException {
+        for(DCELGenerator.Scene scene: DCELGenerator.Scene.values()){
+            Path file = dir.resolve(scene + ".txt");
+            DCELGenerator.write(scene, 1000, 11, file);
+            String expected;
+            try(Scanner scanner = new Scanner(new File(file.toString()))){
+                expected = dump(new DCELReader(scanner).readDCEL());
+            }
+            assertEquals(expected, dump(DCELByteReader.read(file)), scene + " read");
+            assertEquals(expected, dump(DCELByteReader.readParallel(file)), scene + " readParallel");
+            ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+            for(int parts: new int[]{1, 2, 5, 16}){
+                assertEquals(expected, dump(DCELByteReader.readParallel(bytes.duplicate(), 7, parts)), scene + " in " + parts + " parts");
+            }
+        }
+    }
+
+    @Test
+    public void keepsTheSignOfNegativeCoordinates(){
+        String text = "v1  (-2.5, 0.0)  e1,2\n"
+                + "v2  (1.0, -3.25)  e2,1\n"
+                + "f1  nil  e1,2\n"
+                + "f2  e2,1  nil\n"
+                + "e1,2  v1  e2,1  f1  e2,1  e2,1\n"
+                + "e2,1  v2  e1,2  f2  e1,2  e1,2\n";
+        ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+        DCEL dcel = DCELByteReader.read(bytes.duplicate());
+        assertEquals(-2.5f, dcel.vertices.get(0).x);
+        assertEquals(-3.25f, dcel.vertices.get(1).y);
+        assertEquals(dump(dcel), dump(DCELByteReader.readParallel(bytes.duplicate(), 3, 4)));
+    }
+
+    @Test
+    public void numbersHalfEdgesByTheirIndex(){
+        DCEL dcel = Scenes.read(DCELGenerator.Scene.HOLES, 1000, 3);
+        for(int i = 0; i < dcel.halfEdges.size(); i++){
+            assertEquals(i, dcel.halfEdges.get(i).no);
+            assertEquals("e" + i, dcel.halfEdges.get(i).name());
+        }
+    }
+
+    //Every record in list order with its coordinates and the names of what it links to
+    private static String dump(DCEL dcel){
+        StringBuilder out = new StringBuilder();
+        for(Vertex v: dcel.vertices){
+            out.append(v.name()).append(' ').append(v.x).append(' ').append(v.y).append(' ').append(name(v.incidentEdge)).append('\n');
+        }
+        for(Face f: dcel.faces){
+            out.append(f.name).append(' ').append(name(f.outerComponent));
+            if(f.innerComponent == null) out.append(" nil");
+            else for(HalfEdge h: f.innerComponent) out.append(' ').append(name(h));
+            out.append('\n');
+        }
+        for(HalfEdge h: dcel.halfEdges){
+            out.append(h.name()).append(' ').append(h.origin == null ? null : h.origin.name()).append(' ').append(name(h.twin))
+                    .append(' ').append(h.incidentFace == null ? null : h.incidentFace.name)
+                    .append(' ').append(name(h.next)).append(' ').append(name(h.prev)).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static String name(HalfEdge h){
+        return h == null ? null : h.name();
+    }
+}
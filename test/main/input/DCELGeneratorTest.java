@@ -0,0 +1,91 @@
+package main.input;
+
+import main.structures.DCEL.DCEL;
+import main.structures.DCEL.HalfEdge;
+import main.structures.DCEL.Vertex;
+import main.structures.Predicates;
+import main.structures.Segment;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Scanner;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DCELGeneratorTest {
+
+    @TempDir
+    Path dir;
+
+    //Both readers read every scene, its half edges link up into faces, and its segments don't cross
+    @Test
+    public void writesSubdivisionsBothReadersRead() throws IOException {
+        for(DCELGenerator.Scene scene: DCELGenerator.Scene.values()){
+            Path file = dir.resolve(scene + ".txt");
+            DCELGenerator.write(scene, 1000, 5, file);
+            DCEL dcel;
+            try(Scanner scanner = new Scanner(new File(file.toString()))){
+                dcel = new DCELReader(scanner).readDCEL();
+            }
+            DCEL bytes = DCELByteReader.read(file);
+            assertEquals(dcel.vertices.size(), bytes.vertices.size(), scene.toString());
+            assertEquals(dcel.halfEdges.size(), bytes.halfEdges.size(), scene.toString());
+            assertTrue(dcel.halfEdges.size() >= 1000 && dcel.halfEdges.size() <= 4000, scene + " has " + dcel.halfEdges.size() + " half edges");
+
+            for(HalfEdge h: dcel.halfEdges){
+                assertSame(h, h.twin.twin, h.name());
+                assertSame(h, h.next.prev, h.name());
+                assertSame(h.twin.origin, h.next.origin, h.name());
+                assertSame(h.incidentFace, h.next.incidentFace, h.name());
+            }
+
+            List<Segment> segments = TrapMapBuilder.buildTrapMap(dcel, 5).segments;
+            for(int i = 0; i < segments.size(); i++){
+                for(int j = i + 1; j < segments.size(); j++){
+                    assertFalse(cross(segments.get(i), segments.get(j)), scene + " " + segments.get(i).name() + " " + segments.get(j).name());
+                }
+            }
+        }
+    }
+
+    private static boolean cross(Segment a, Segment b){
+        return Predicates.orientation(a, b.p) * Predicates.orientation(a, b.q) < 0
+                && Predicates.orientation(b, a.p) * Predicates.orientation(b, a.q) < 0;
+    }
+
+    @Test
+    public void writesTracesWithinTheExtent() throws IOException {
+        Path file = dir.resolve("grid.txt");
+        DCELGenerator.write(DCELGenerator.Scene.GRID, 1000, 6, file);
+        DCEL dcel = DCELByteReader.read(file);
+        float left = Float.MAX_VALUE, right = -Float.MAX_VALUE, bottom = Float.MAX_VALUE, top = -Float.MAX_VALUE;
+        for(Vertex v: dcel.vertices){
+            left = Math.min(left, v.x);
+            right = Math.max(right, v.x);
+            bottom = Math.min(bottom, v.y);
+            top = Math.max(top, v.y);
+        }
+
+        for(QueryTraceGenerator.Distribution distribution: QueryTraceGenerator.Distribution.values()){
+            Path trace = dir.resolve(distribution + ".trace");
+            QueryTraceGenerator.write(dcel, distribution, 500, 6, trace);
+            List<String> lines = Files.readAllLines(trace, StandardCharsets.UTF_8);
+            assertEquals(500, lines.size(), distribution.toString());
+            for(String line: lines){
+                String[] xy = line.split(" ");
+                float x = Float.parseFloat(xy[0]);
+                float y = Float.parseFloat(xy[1]);
+                assertTrue(x >= left && x <= right && y >= bottom && y <= top, distribution + " " + line);
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package main.input;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class QueryReaderTest {
+
+    @Test
+    public void readsOnePointPerLineInBatches() throws IOException {
+        String text = "(1.5, 2)\n3 4\n\nno point here\n5,6 7\n8 9";
+        QueryReader reader = new QueryReader(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+        float[] xs = new float[3];
+        float[] ys = new float[3];
+        assertEquals(3, reader.read(xs, ys));
+        assertArrayEquals(new float[]{1.5f, 3, 5}, xs);
+        assertArrayEquals(new float[]{2, 4, 6}, ys);
+        assertEquals(1, reader.read(xs, ys));
+        assertEquals(8, xs[0]);
+        assertEquals(9, ys[0]);
+        assertEquals(0, reader.read(xs, ys));
+    }
+
+    @Test
+    public void rejectsALineWithOneNumber(){
+        QueryReader reader = new QueryReader(new ByteArrayInputStream("1 2\n(1.5)\n".getBytes(StandardCharsets.UTF_8)));
+        assertThrows(IllegalArgumentException.class, () -> reader.read(new float[4], new float[4]));
+    }
+
+    @Test
+    public void keepsAMinusSignDirectlyBeforeANumber() throws IOException {
+        String[] lines = {"(-1.5, 2)", "3 -4", "x- 5, y-6", "7,-.5 9"};
+        float[][] expected = {{-1.5f, 2}, {3, -4}, {5, -6}, {7, -0.5f}};
+
+        float[] xs = new float[8];
+        float[] ys = new float[8];
+        QueryReader reader = new QueryReader(new ByteArrayInputStream(String.join("\nno point\n", lines).getBytes(StandardCharsets.UTF_8)));
+        assertEquals(lines.length, reader.read(xs, ys));
+        for(int i = 0; i < lines.length; i++){
+            assertArrayEquals(expected[i], new float[]{xs[i], ys[i]}, lines[i]);
+            assertArrayEquals(expected[i], QueryReader.point(lines[i]), lines[i]);
+        }
+    }
+
+    @Test
+    public void answersNoPointForALineWithoutNumbers(){
+        assertNull(QueryReader.point(""));
+        assertNull(QueryReader.point("- , -"));
+        assertThrows(IllegalArgumentException.class, () -> QueryReader.point("(1.5)"));
+    }
+}
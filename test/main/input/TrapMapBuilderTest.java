@@ -0,0 +1,250 @@
+package main.input;
+
+import main.Query;
+import main.Scenes;
+import main.structures.DCEL.DCEL;
+import main.structures.DCEL.Face;
+import main.structures.DCEL.HalfEdge;
+import main.structures.DCEL.Vertex;
+import main.structures.Segment;
+import main.structures.Trapezoid;
+import main.structures.TrapezoidMap;
+import main.structures.search.QueryResponse;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TrapMapBuilderTest {
+
+    //The trapezoidal map of a set of segments doesn't depend on the order they are inserted in
+    @Test
+    public void everyInsertionOrderBuildsTheSameMap(){
+        DCEL dcel = Scenes.sample();
+        float[] xy = Scenes.points(dcel, 500, 1);
+        TrapezoidMap fileOrder = TrapMapBuilder.buildTrapMap(dcel);
+        assertNull(fileOrder.seed);
+        List<String> expected = answers(fileOrder, xy);
+
+        for(long seed = 0; seed < 50; seed++){
+            TrapezoidMap map = TrapMapBuilder.buildTrapMap(dcel, seed);
+            assertEquals(Long.valueOf(seed), map.seed);
+            assertEquals(fileOrder.traps.size(), map.traps.size(), "seed " + seed);
+            assertEquals(expected, answers(map, xy), "seed " + seed);
+        }
+    }
+
+    @Test
+    public void pairsTwinHalfEdgesIntoOneSegment(){
+        DCEL dcel = Scenes.sample();
+        TrapezoidMap map = TrapMapBuilder.buildTrapMap(dcel);
+        Set<Segment> listed = Collections.newSetFromMap(new IdentityHashMap<>());
+        listed.addAll(map.segments);
+        Set<Segment> paired = Collections.newSetFromMap(new IdentityHashMap<>());
+        for(HalfEdge e: dcel.halfEdges){
+            assertSame(e.segment, e.twin.segment);
+            assertTrue(listed.contains(e.segment));
+            assertTrue(e.segment.p == e.origin || e.segment.q == e.origin);
+            paired.add(e.segment);
+        }
+        assertEquals(dcel.halfEdges.size() / 2, paired.size());
+        assertEquals(paired.size() + 4, map.segments.size());
+    }
+
+    //Names are built from the numbers on demand. Vertices keep the names of the file, the sides of the
+    //bounding box are L, R, T and B and its corners c1 to c4, which also answer queries by name
+    @Test
+    public void namesEntitiesAsTheFileDoes() throws IOException {
+        DCEL dcel = Scenes.sample();
+        TrapezoidMap map = TrapMapBuilder.buildTrapMap(dcel);
+        Set<String> records = new HashSet<>();
+        for(String line: Files.readAllLines(Scenes.sampleFile(), StandardCharsets.US_ASCII)){
+            if(!line.trim().isEmpty()) records.add(line.trim().split("\\s+")[0]);
+        }
+        for(Vertex v: dcel.vertices) assertTrue(records.contains(v.name()), v.name());
+
+        Set<String> sides = new HashSet<>();
+        Set<String> corners = new HashSet<>();
+        for(Segment s: map.segments){
+            if(s.no >= 0){
+                assertEquals("s" + s.no, s.name());
+                continue;
+            }
+            sides.add(s.queryString());
+            for(Vertex v: new Vertex[]{s.p, s.q}){
+                assertTrue(v.corner);
+                corners.add(v.queryString());
+            }
+        }
+        assertEquals(new HashSet<>(Arrays.asList("L", "R", "T", "B")), sides);
+        assertEquals(new HashSet<>(Arrays.asList("c1", "c2", "c3", "c4")), corners);
+    }
+
+    //Under 3.5 ln(n + 1) the sample's first permutation is too deep, so the build has to try others
+    @Test
+    public void depthBoundedBuildRebuildsUntilTheBoundIsMet(){
+        DCEL dcel = Scenes.sample();
+        List<String> expected = answers(TrapMapBuilder.buildTrapMap(dcel), Scenes.points(dcel, 500, 8));
+        int bound = (int) (3.5 * Math.log(dcel.halfEdges.size() / 2 + 1));
+
+        TrapezoidMap map = TrapMapBuilder.buildTrapMap(dcel, 1, 3.5);
+        assertTrue(map.rebuilds > 0);
+        assertTrue(map.depth <= bound);
+        assertEquals(map.depth(), map.depth);
+        assertEquals(expected, answers(map, Scenes.points(dcel, 500, 8)));
+
+        TrapezoidMap again = TrapMapBuilder.buildTrapMap(dcel, 1, 3.5);
+        assertEquals(map.seed, again.seed);
+        assertEquals(map.rebuilds, again.rebuilds);
+        assertEquals(map.depth, again.depth);
+    }
+
+    @Test
+    public void depthBoundedBuildAcceptsTheFirstBuildUnderABoundItMeets(){
+        DCEL dcel = Scenes.read(DCELGenerator.Scene.GRID, 500, 1);
+        TrapezoidMap map = TrapMapBuilder.buildTrapMap(dcel, 1, 100);
+        assertTrue(map.depthBoundMet);
+        assertEquals(0, map.rebuilds);
+        assertTrue(map.depth <= map.depthBound);
+        assertEquals(map.depth(), map.depth);
+        assertTrue(map.metrics.isDepthBoundMet());
+        assertEquals(map.depthBound, map.metrics.getDepthBound());
+    }
+
+    @Test
+    public void depthBoundedBuildReportsABoundNoAttemptMet(){
+        DCEL dcel = Scenes.read(DCELGenerator.Scene.GRID, 500, 1);
+        TrapezoidMap map = TrapMapBuilder.buildTrapMap(dcel, 1, 0.5);
+        assertFalse(map.depthBoundMet);
+        assertEquals(TrapMapBuilder.maxAttempts - 1, map.rebuilds);
+        assertTrue(map.depth > map.depthBound);
+        assertEquals(map.depth(), map.depth);
+        assertFalse(map.metrics.isDepthBoundMet());
+        assertEquals(map.rebuilds, map.metrics.getRebuilds());
+        assertEquals(map.depth, map.metrics.getBuildDepth());
+
+        //It keeps the shallowest attempt
+        TrapezoidMap first = TrapMapBuilder.buildTrapMap(dcel, 1);
+        assertTrue(map.depth <= first.depth());
+    }
+
+    @Test
+    public void rejectedAttemptsLeaveNothingOnTheFaces(){
+        DCEL dcel = Scenes.read(DCELGenerator.Scene.GRID, 500, 1);
+        TrapezoidMap map = TrapMapBuilder.buildTrapMap(dcel, 1, 0.5);
+        assertEquals(TrapMapBuilder.maxAttempts - 1, map.rebuilds);
+
+        int listed = 0;
+        for(Face f: dcel.faces){
+            for(Trapezoid t: map.trapezoids(f)){
+                assertTrue(map.traps.contains(t));
+                assertEquals(f, t.containingFace);
+            }
+            listed += map.trapezoids(f).size();
+        }
+        assertEquals(map.traps.size(), listed);
+    }
+
+    @Test
+    public void unboundedBuildsReportNoBound(){
+        TrapezoidMap map = TrapMapBuilder.buildTrapMap(Scenes.read(DCELGenerator.Scene.GRID, 500, 1), 1);
+        assertEquals(-1, map.depthBound);
+        assertTrue(map.depthBoundMet);
+        assertTrue(map.metrics.isDepthBoundMet());
+    }
+
+    //A reader gets each map as soon as it holds the bounding box and locates points in it while the
+    //segments go in. Every answer has to hold for its point, whether it came from before or after an insertion
+    @Test
+    public void queriesDuringABuildAnswerForTheirPoint() throws InterruptedException {
+        DCEL dcel = Scenes.sample();
+        float[] xy = Scenes.points(dcel, 2000, 9);
+        AtomicReference<TrapezoidMap> published = new AtomicReference<>();
+        AtomicBoolean building = new AtomicBoolean(true);
+        Queue<String> failures = new ConcurrentLinkedQueue<>();
+        Thread reader = new Thread(() -> {
+            QueryResponse response = new QueryResponse();
+            while(building.get()){
+                TrapezoidMap map = published.get();
+                if(map == null) continue;
+                for(int i = 0; i < xy.length; i += 2){
+                    if(map.locate(xy[i], xy[i + 1], response) && !holds(response, xy[i], xy[i + 1]))
+                        failures.add(response.type + " for " + xy[i] + ", " + xy[i + 1]);
+                }
+            }
+        });
+        reader.setUncaughtExceptionHandler((t, e) -> failures.add("reader threw " + e));
+        reader.start();
+        try{
+            for(long seed = 0; seed < 200; seed++){
+                TrapezoidMap map = TrapMapBuilder.buildTrapMap(dcel, seed, m -> {
+                    assertEquals(1, m.traps.size());
+                    published.set(m);
+                });
+                assertSame(map, published.get());
+            }
+        }
+        finally{
+            building.set(false);
+            reader.join();
+        }
+        assertTrue(failures.isEmpty(), failures.size() + " failures, first " + failures.peek());
+    }
+
+    //Whether the answer holds for (x, y) up to a small tolerance
+    private static boolean holds(QueryResponse response, float x, float y){
+        double tolerance = 1e-3;
+        switch(response.type){
+            case VERTEX:
+                return Math.abs(response.v.x - x) < tolerance && Math.abs(response.v.y - y) < tolerance;
+            case SEGMENT:
+                Segment s = response.s;
+                if(s.p.x == s.q.x) return Math.abs(x - s.p.x) < tolerance && y > s.p.y - tolerance && y < s.q.y + tolerance;
+                return x > s.p.x - tolerance && x < s.q.x + tolerance && Math.abs(height(s, x) - y) < tolerance;
+            default:
+                Trapezoid t = response.t;
+                return x > t.leftp.x - tolerance && x < t.rightp.x + tolerance
+                        && y < height(t.top, x) + tolerance && y > height(t.bottom, x) - tolerance;
+        }
+    }
+
+    //Only for segments that aren't vertical, which tops and bottoms never are
+    private static double height(Segment s, float x){
+        return s.p.y + ((double) s.q.y - s.p.y) * (x - s.p.x) / ((double) s.q.x - s.p.x);
+    }
+
+    static List<String> answers(TrapezoidMap map, float[] xy){
+        List<String> answers = new ArrayList<>();
+        for(int i = 0; i < xy.length; i += 2){
+            QueryResponse response = map.query(new Query(xy[i], xy[i + 1]));
+            answers.add(response == null ? "outside" : response.type + " " + text(response));
+        }
+        return answers;
+    }
+
+    private static String text(QueryResponse response){
+        switch(response.type){
+            case VERTEX: return response.v.queryString();
+            case SEGMENT: return response.s.queryString();
+            default: return response.t.queryString();
+        }
+    }
+}
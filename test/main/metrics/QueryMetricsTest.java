@@ -0,0 +1,90 @@
+package main.metrics;
+
+import main.Scenes;
+import main.input.TrapMapBuilder;
+import main.structures.DCEL.DCEL;
+import main.structures.TrapezoidMap;
+import main.structures.search.QueryResponse;
+import main.structures.search.ResponseType;
+import org.junit.jupiter.api.Test;
+
+import javax.management.Attribute;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class QueryMetricsTest {
+
+    //Every query ends in exactly one way, and the way matches the answer, on the DAG and frozen
+    @Test
+    public void countsEachQueryByHowItsDescentEnded(){
+        DCEL dcel = Scenes.sample();
+        TrapezoidMap map = TrapMapBuilder.buildTrapMap(dcel, 21);
+        float[] xy = Scenes.points(dcel, 2000, 21);
+        String expected = answers(map, xy);
+        int[] types = new int[ResponseType.values().length];
+        int outside = 0;
+        QueryResponse response = new QueryResponse();
+        for(int i = 0; i < xy.length; i += 2){
+            if(map.locate(xy[i], xy[i + 1], response)) types[response.type.ordinal()]++;
+            else outside++;
+        }
+        int n = xy.length / 2;
+
+        map.metrics.setEnabled(true);
+        for(int frozen = 0; frozen < 2; frozen++){
+            if(frozen == 1) map.freeze();
+            map.metrics.reset();
+            assertEquals(expected, answers(map, xy));
+            QueryMetrics metrics = map.metrics;
+            assertEquals(n, metrics.getQueries());
+            assertEquals(outside, metrics.getOutsideQueries());
+            assertEquals(types[ResponseType.VERTEX.ordinal()], metrics.getXNodeVertexHits() + metrics.getYNodeVertexHits());
+            assertEquals(types[ResponseType.SEGMENT.ordinal()], metrics.getSegmentHits());
+            assertEquals(types[ResponseType.TRAPEZOID.ordinal()], metrics.getLeafHits());
+            assertEquals(n, metrics.latency.count());
+            long histogram = 0;
+            for(long d: metrics.getDepthHistogram()) histogram += d;
+            assertEquals(n, histogram);
+        }
+    }
+
+    @Test
+    public void switchesOnAndOffThroughTheMBean() throws JMException {
+        TrapezoidMap map = TrapMapBuilder.buildTrapMap(Scenes.sample(), 22);
+        map.registerMBean("QueryMetricsTest");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("main:type=TrapezoidMap,name=" + ObjectName.quote("QueryMetricsTest"));
+        try{
+            QueryResponse response = new QueryResponse();
+            map.locate(0, 0, response);
+            assertEquals(0L, server.getAttribute(name, "Queries"));
+
+            server.setAttribute(name, new Attribute("Enabled", true));
+            map.locate(0, 0, response);
+            map.locate(1, 1, response);
+            assertEquals(2L, server.getAttribute(name, "Queries"));
+
+            server.setAttribute(name, new Attribute("Enabled", false));
+            map.locate(0, 0, response);
+            assertEquals(2L, server.getAttribute(name, "Queries"));
+            server.invoke(name, "reset", null, null);
+            assertEquals(0L, server.getAttribute(name, "Queries"));
+        }
+        finally{
+            server.unregisterMBean(name);
+        }
+    }
+
+    private static String answers(TrapezoidMap map, float[] xy){
+        StringBuilder out = new StringBuilder();
+        QueryResponse response = new QueryResponse();
+        for(int i = 0; i < xy.length; i += 2){
+            out.append(map.locate(xy[i], xy[i + 1], response) ? response.type + " " + response.queryString() : "OUTSIDE").append('\n');
+        }
+        return out.toString();
+    }
+}
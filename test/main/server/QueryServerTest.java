@@ -0,0 +1,115 @@
+package main.server;
+
+import main.Scenes;
+import main.input.DCELGenerator;
+import main.input.TrapMapBuilder;
+import main.structures.Segment;
+import main.structures.TrapezoidMap;
+import main.structures.search.MappedSearchStructure;
+import main.structures.search.QueryResponse;
+import main.structures.search.ResponseType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class QueryServerTest {
+
+    @Test
+    public void answersEveryPointWithItsTypeAndNumber() throws IOException {
+        TrapezoidMap map = TrapMapBuilder.buildTrapMap(Scenes.read(DCELGenerator.Scene.GRID, 500, 1), 1);
+        map.freeze();
+        Segment s = map.segments.get(10);
+        float[] xy = {s.p.x, s.p.y, (s.p.x + s.q.x) / 2, (s.p.y + s.q.y) / 2, s.p.x + 0.1f, s.p.y + 0.05f, -1e6f, 0};
+
+        QueryServer server = new QueryServer(map, 0);
+        server.start();
+        try(Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.port());
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)){
+            StringBuilder request = new StringBuilder("r1");
+            for(float f: xy) request.append(' ').append(f);
+            out.write(request + "\nr2 1\nBOUNDS\nQUIT\n");
+            out.flush();
+
+            QueryResponse response = new QueryResponse();
+            for(int i = 0; i < xy.length; i += 2){
+                String answer = in.readLine();
+                if(map.locate(xy[i], xy[i + 1], response)){
+                    assertEquals("r1 " + response.type + " " + response.id(), answer);
+                    assertTrue(QueryLoadGenerator.answers(answer, "r1"));
+                }
+                else{
+                    assertEquals("r1 OUTSIDE", answer);
+                }
+            }
+            assertTrue(in.readLine().startsWith("ERROR"));
+            assertEquals(4, in.readLine().split(" ").length);
+        }
+        finally{
+            server.close();
+        }
+
+        assertEquals(ResponseType.VERTEX, response(map, s.p.x, s.p.y).type);
+        assertEquals(s.no, response(map, (s.p.x + s.q.x) / 2, (s.p.y + s.q.y) / 2).id());
+    }
+
+    @Test
+    public void answersFromASnapshotAsFromItsMap(@TempDir Path dir) throws IOException {
+        TrapezoidMap map = TrapMapBuilder.buildTrapMap(Scenes.read(DCELGenerator.Scene.HOLES, 500, 2), 2);
+        map.freeze();
+        Path file = dir.resolve("holes.tmap");
+        map.writeSnapshot(file);
+
+        Random random = new Random(2);
+        StringBuilder request = new StringBuilder("r");
+        for(int i = 0; i < 200; i++) request.append(' ').append(random.nextFloat() * 60 - 5).append(' ').append(random.nextFloat() * 60 - 5);
+        for(Segment s: map.segments.subList(0, 50)) request.append(' ').append(s.p.x).append(' ').append(s.p.y);
+        int points = 250;
+
+        QueryServer fromMap = new QueryServer(map, 0);
+        QueryServer fromSnapshot = new QueryServer(MappedSearchStructure.open(file), 0);
+        fromMap.start();
+        fromSnapshot.start();
+        try{
+            assertEquals(replies(fromMap, "BOUNDS", 1), replies(fromSnapshot, "BOUNDS", 1));
+            assertEquals(replies(fromMap, request.toString(), points), replies(fromSnapshot, request.toString(), points));
+        }
+        finally{
+            fromMap.close();
+            fromSnapshot.close();
+        }
+    }
+
+    private static List<String> replies(QueryServer server, String request, int lines) throws IOException {
+        try(Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.port());
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)){
+            out.write(request + "\nQUIT\n");
+            out.flush();
+            List<String> replies = new ArrayList<>();
+            for(int i = 0; i < lines; i++) replies.add(in.readLine());
+            return replies;
+        }
+    }
+
+    private static QueryResponse response(TrapezoidMap map, float x, float y){
+        QueryResponse response = new QueryResponse();
+        map.locate(x, y, response);
+        return response;
+    }
+}
@@ -0,0 +1,51 @@
+package main.structures;
+
+import main.structures.DCEL.Vertex;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//Predicates have to give the signs of exact arithmetic, also where the double determinant rounds to the wrong one
+public class PredicatesTest {
+
+    private static Segment segment(float px, float py, float qx, float qy){
+        return new Segment(new Vertex(px, py, 0), new Vertex(qx, qy, 1), 0);
+    }
+
+    @Test
+    public void orientationOfPointsOnALineIsZero(){
+        Segment diagonal = segment(-1e30f, -1e30f, 1e30f, 1e30f);
+        for(float c: new float[]{-3.7e20f, -1f, 0f, 1e-30f, 0.1f, 12345.679f}){
+            assertEquals(0, Predicates.orientation(diagonal, new Vertex(c, c, 2)), "at " + c);
+        }
+    }
+
+    @Test
+    public void orientationResolvesOneUlp(){
+        //Far from the origin of the segment, y - p.y rounds away the ulp in double
+        Segment diagonal = segment(-1e30f, -1e30f, 1e30f, 1e30f);
+        float c = 1e-30f;
+        assertEquals(1, Predicates.orientation(diagonal, new Vertex(c, Math.nextUp(c), 2)));
+        assertEquals(-1, Predicates.orientation(diagonal, new Vertex(c, Math.nextDown(c), 2)));
+        assertEquals(1, Predicates.orientation(diagonal, new Vertex(Math.nextDown(c), c, 2)));
+        assertEquals(-1, Predicates.orientation(diagonal, new Vertex(Math.nextUp(c), c, 2)));
+    }
+
+    @Test
+    public void pointsRightOfAVerticalSegmentAreBelowIt(){
+        Segment vertical = segment(2f, 1f, 2f, 5f);
+        assertEquals(-1, Predicates.orientation(vertical, new Vertex(Math.nextUp(2f), 3f, 2)));
+        assertEquals(1, Predicates.orientation(vertical, new Vertex(Math.nextDown(2f), 3f, 2)));
+        assertEquals(0, Predicates.orientation(vertical, new Vertex(2f, 9f, 2)));
+    }
+
+    @Test
+    public void turnOfNearlyParallelSegments(){
+        Segment a = segment(0f, 0f, 1e30f, 1e30f);
+        assertEquals(0, Predicates.turn(a, segment(-1f, -1f, 3f, 3f)));
+        assertEquals(1, Predicates.turn(a, segment(0f, 0f, 1e30f, Math.nextUp(1e30f))));
+        assertEquals(-1, Predicates.turn(a, segment(0f, 0f, Math.nextUp(1e30f), 1e30f)));
+        //A vertical segment turns counterclockwise from any segment going right
+        assertEquals(1, Predicates.turn(a, segment(5f, 0f, 5f, 1f)));
+    }
+}
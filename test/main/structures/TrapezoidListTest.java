@@ -0,0 +1,93 @@
+package main.structures;
+
+import main.structures.DCEL.Vertex;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TrapezoidListTest {
+
+    @Test
+    public void addsAndRemovesAnywhereInTheList(){
+        Trapezoid[] t = trapezoids(5);
+        TrapezoidList list = new TrapezoidList();
+        for(Trapezoid x: t) assertTrue(list.add(x));
+        assertFalse(list.add(t[2]));
+        assertEquals(5, list.size());
+
+        // The last one added is the head, the first one the tail
+        assertTrue(list.remove(t[4]));
+        assertTrue(list.remove(t[0]));
+        assertTrue(list.remove(t[2]));
+        assertFalse(list.remove(t[2]));
+        assertEquals(2, list.size());
+        assertEquals(new HashSet<>(Arrays.asList(t[1], t[3])), new HashSet<>(list));
+        for(int i: new int[]{0, 2, 4}) assertFalse(list.contains(t[i]));
+
+        assertTrue(list.add(t[2]));
+        Set<Trapezoid> listed = new HashSet<>(list);
+        assertEquals(3, listed.size());
+        assertTrue(listed.contains(t[2]));
+    }
+
+    @Test
+    public void containsOnlyItsOwnTrapezoids(){
+        Trapezoid[] t = trapezoids(3);
+        TrapezoidList a = new TrapezoidList();
+        TrapezoidList b = new TrapezoidList();
+        a.addAll(Arrays.asList(t[0], t[1]));
+        b.add(t[2]);
+
+        assertTrue(a.contains(t[0]));
+        assertTrue(a.contains(t[1]));
+        assertFalse(a.contains(t[2]));
+        assertFalse(b.contains(t[0]));
+        assertFalse(a.add(t[0]));
+        assertThrows(IllegalArgumentException.class, () -> b.add(t[0]));
+        assertFalse(b.remove(t[0]));
+        assertEquals(2, a.size());
+
+        a.remove(t[0]);
+        assertFalse(a.contains(t[0]));
+        assertTrue(b.add(t[0]));
+        assertTrue(b.contains(t[0]));
+    }
+
+    @Test
+    public void removesThroughItsIterator(){
+        Trapezoid[] t = trapezoids(5);
+        TrapezoidList list = new TrapezoidList();
+        list.addAll(Arrays.asList(t));
+
+        assertTrue(list.removeIf(x -> x == t[0] || x == t[2] || x == t[4]));
+        assertEquals(2, list.size());
+        assertTrue(list.contains(t[1]));
+        assertTrue(list.contains(t[3]));
+        assertFalse(list.contains(t[2]));
+
+        Iterator<Trapezoid> it = list.iterator();
+        assertThrows(IllegalStateException.class, it::remove);
+        it.next();
+        it.remove();
+        assertThrows(IllegalStateException.class, it::remove);
+
+        list.clear();
+        assertTrue(list.isEmpty());
+        assertFalse(list.iterator().hasNext());
+        for(Trapezoid x: t) assertFalse(list.contains(x));
+    }
+
+    private static Trapezoid[] trapezoids(int n){
+        Trapezoid[] t = new Trapezoid[n];
+        for(int i = 0; i < n; i++) t[i] = new Trapezoid(new Vertex(i, 0, i), new Vertex(i + 1, 0, i + 1), null, null, i);
+        return t;
+    }
+}
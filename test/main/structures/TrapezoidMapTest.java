@@ -0,0 +1,554 @@
+package main.structures;
+
+import main.Scenes;
+import main.input.DCELGenerator;
+import main.input.TrapMapBuilder;
+import main.structures.DCEL.DCEL;
+import main.structures.DCEL.Face;
+import main.structures.DCEL.HalfEdge;
+import main.structures.DCEL.Vertex;
+import main.structures.search.QueryResponse;
+import main.structures.search.ResponseType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TrapezoidMapTest {
+
+    //Enough points for several chunks. Every other response is already in the array and has to be reused
+    @Test
+    public void batchQueryAnswersAsSingleQueries(){
+        DCEL dcel = Scenes.sample();
+        TrapezoidMap map = TrapMapBuilder.buildTrapMap(dcel, 6);
+        float[][] points = rows(Scenes.points(dcel, 20000, 6));
+        float[] xs = points[0];
+        float[] ys = points[1];
+
+        for(boolean frozen: new boolean[]{false, true}){
+            if(frozen) map.freeze();
+            QueryResponse[] responses = new QueryResponse[xs.length];
+            QueryResponse[] given = new QueryResponse[xs.length];
+            for(int i = 0; i < xs.length; i += 2) responses[i] = given[i] = new QueryResponse();
+            map.query(xs, ys, responses);
+
+            QueryResponse expected = new QueryResponse();
+            for(int i = 0; i < xs.length; i++){
+                String point = (frozen ? "frozen " : "") + xs[i] + ", " + ys[i];
+                if(!map.locate(xs[i], ys[i], expected)){
+                    assertNull(responses[i], point);
+                    continue;
+                }
+                if(given[i] != null) assertSame(given[i], responses[i], point);
+                assertEquals(expected.type, responses[i].type, point);
+                assertSame(expected.v, responses[i].v, point);
+                assertSame(expected.s, responses[i].s, point);
+                assertSame(expected.t, responses[i].t, point);
+            }
+        }
+    }
+
+    //The walks start from the trapezoid of the previous point in a band, wherever the responses came from
+    @Test
+    public void sortedBatchAnswersAsSingleQueries(){
+        DCEL dcel = Scenes.sample();
+        for(long seed = 0; seed < 5; seed++){
+            TrapezoidMap map = TrapMapBuilder.buildTrapMap(dcel, seed);
+            float[][] points = rows(Scenes.points(dcel, 20000, seed));
+            float[] xs = points[0];
+            float[] ys = points[1];
+            for(boolean frozen: new boolean[]{false, true}){
+                if(frozen) map.freeze();
+                QueryResponse[] responses = new QueryResponse[xs.length];
+                map.querySorted(xs, ys, responses);
+
+                QueryResponse expected = new QueryResponse();
+                for(int i = 0; i < xs.length; i++){
+                    String point = "seed " + seed + (frozen ? " frozen " : " ") + xs[i] + ", " + ys[i];
+                    if(!map.locate(xs[i], ys[i], expected)){
+                        assertNull(responses[i], point);
+                        continue;
+                    }
+                    assertEquals(expected.type, responses[i].type, point);
+                    assertSame(expected.v, responses[i].v, point);
+                    assertSame(expected.s, responses[i].s, point);
+                    assertSame(expected.t, responses[i].t, point);
+                }
+            }
+        }
+    }
+
+    //Below the sample runs a free segment, and another one leaves its rightmost vertex v7 at (5, 1.8)
+    @Test
+    public void insertAddsSegmentsNextToTheBuiltOnes(){
+        DCEL dcel = Scenes.sample();
+        TrapezoidMap map = TrapMapBuilder.buildTrapMap(dcel, 10);
+        Vertex v7 = dcel.vertices.get(6);
+        Segment below = new Segment(new Vertex(0, 1, 100), new Vertex(5.5f, 1, 101), 100);
+        Segment fromV7 = new Segment(new Vertex(5, 1.8f, 102), new Vertex(5.8f, 1.2f, 103), 101);
+        map.insert(below);
+        map.insert(fromV7);
+
+        assertSame(v7, fromV7.p);
+        QueryResponse response = new QueryResponse();
+        for(Segment s: new Segment[]{below, fromV7}){
+            map.locate((s.p.x + s.q.x) / 2, (s.p.y + s.q.y) / 2, response);
+            assertEquals(ResponseType.SEGMENT, response.type);
+            assertSame(s, response.s);
+            map.locate(s.q.x, s.q.y, response);
+            assertSame(s.q, response.v);
+        }
+        for(Vertex v: dcel.vertices){
+            map.locate(v.x, v.y, response);
+            assertSame(v, response.v);
+        }
+        map.locate(2.75f, 1.4f, response);
+        assertEquals(ResponseType.TRAPEZOID, response.type);
+        assertSame(below, response.t.bottom);
+
+        assertThrows(IllegalArgumentException.class, () -> map.insert(new Segment(new Vertex(5, 1.8f, 104), new Vertex(5.8f, 1.2f, 105), 102)));
+        assertThrows(IllegalArgumentException.class, () -> map.insert(new Segment(new Vertex(1, 1, 106), new Vertex(10, 1, 107), 103)));
+        assertThrows(IllegalArgumentException.class, () -> map.insert(new Segment(new Vertex(1, 1, 108), new Vertex(1, 1, 109), 104)));
+    }
+
+    //The map after deletions has to answer as a fresh build of the segments left, first with the
+    //deleted nodes still in the search structure, then after the rebuild more than half of them force
+    @Test
+    public void deletingAnswersAsAFreshBuildOfTheRest(){
+        DCEL dcel = Scenes.sample();
+        float[] xy = Scenes.points(dcel, 2000, 11);
+        TrapezoidMap map = TrapMapBuilder.buildTrapMap(dcel, 11);
+        List<Segment> boundingBox = new ArrayList<>(map.segments.subList(0, 4));
+        Face unbounded = dcel.faces.get(0);
+        List<Segment> rest = new ArrayList<>(map.segments.subList(4, map.segments.size()));
+        Collections.shuffle(rest, new Random(11));
+        int all = map.segments.size();
+
+        delete(map, rest, 5);
+        assertEquals(all, map.segments.size());
+        assertEquals(Long.valueOf(11), map.seed);
+        assertEquals(answers(TrapMapBuilder.buildTrapMap(boundingBox, unbounded, new ArrayList<>(rest), 1), xy), answers(map, xy));
+
+        // More than half of all segments, the sides of the box included
+        delete(map, rest, all / 2 + 1 - 5);
+        assertEquals(rest.size() + 4, map.segments.size());
+        assertNotEquals(Long.valueOf(11), map.seed);
+        assertEquals(answers(TrapMapBuilder.buildTrapMap(boundingBox, unbounded, new ArrayList<>(rest), 1), xy), answers(map, xy));
+
+        assertThrows(IllegalArgumentException.class, () -> map.delete(boundingBox.get(0)));
+    }
+
+    private static void delete(TrapezoidMap map, List<Segment> rest, int n){
+        for(int i = 0; i < n; i++){
+            Segment s = rest.remove(0);
+            map.delete(s);
+            assertTrue(s.deleted);
+            assertThrows(IllegalArgumentException.class, () -> map.delete(s));
+        }
+    }
+
+    @Test
+    public void reinsertingADeletedSegmentRevivesItWhereItIsListed(){
+        TrapezoidMap map = TrapMapBuilder.buildTrapMap(Scenes.read(DCELGenerator.Scene.GRID, 2000, 3), 1);
+        int size = map.segments.size();
+        QueryResponse response = new QueryResponse();
+        for(int i = 10; i < 20; i++){
+            Segment s = map.segments.get(i);
+            map.delete(s);
+            map.insert(s);
+            assertEquals(size, map.segments.size());
+            assertSame(s, map.segments.get(i));
+            assertFalse(s.deleted);
+            map.locate((s.p.x + s.q.x) / 2, (s.p.y + s.q.y) / 2, response);
+            assertEquals(ResponseType.SEGMENT, response.type);
+            assertSame(s, response.s);
+        }
+    }
+
+    @Test
+    public void insertRejectsSegmentsOnTheBoundingBoxOrNumberedLikeItsSides(){
+        TrapezoidMap map = TrapMapBuilder.buildTrapMap(Scenes.read(DCELGenerator.Scene.GRID, 500, 4), 4);
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        for(Segment side: map.segments.subList(0, 4)){
+            minX = Math.min(minX, Math.min(side.p.x, side.q.x));
+            minY = Math.min(minY, Math.min(side.p.y, side.q.y));
+        }
+        float x = minX, y = minY;
+        int size = map.segments.size();
+
+        assertThrows(IllegalArgumentException.class, () -> map.insert(new Segment(new Vertex(x, y + 0.01f, 0), new Vertex(x + 0.01f, y + 0.02f, 1), size)));
+        assertThrows(IllegalArgumentException.class, () -> map.insert(new Segment(new Vertex(x + 0.01f, y, 0), new Vertex(x + 0.02f, y + 0.01f, 1), size)));
+        assertThrows(IllegalArgumentException.class, () -> map.insert(new Segment(new Vertex(x + 0.01f, y + 0.01f, 0), new Vertex(x + 0.02f, y + 0.02f, 1), -1)));
+        assertEquals(size, map.segments.size());
+
+        Segment inside = new Segment(new Vertex(x + 0.01f, y + 0.01f, 0), new Vertex(x + 0.02f, y + 0.02f, 1), size);
+        map.insert(inside);
+        QueryResponse response = new QueryResponse();
+        map.locate(x + 0.015f, y + 0.015f, response);
+        assertSame(inside, response.s);
+    }
+
+    @Test
+    public void deletingAndReinsertingAnswersAsAFreshBuild(){
+        for(DCELGenerator.Scene scene: DCELGenerator.Scene.values()){
+            DCEL dcel = Scenes.read(scene, 1000, 7);
+            TrapezoidMap map = TrapMapBuilder.buildTrapMap(dcel, 7);
+            List<Segment> inner = new ArrayList<>(map.segments.subList(4, map.segments.size()));
+            Collections.shuffle(inner, new Random(7));
+            List<Segment> deleted = inner.subList(0, inner.size() * 2 / 5); //Short of a rebuild
+            for(Segment s: deleted) map.delete(s);
+            Collections.shuffle(deleted, new Random(8));
+            for(Segment s: deleted) map.insert(s);
+
+            TrapezoidMap fresh = TrapMapBuilder.buildTrapMap(dcel, 9);
+            float[][] points = randomPoints(map, 4000, 7);
+            float[][] onMap = new float[2][3 * inner.size()];
+            for(int i = 0; i < inner.size(); i++){
+                Segment s = inner.get(i);
+                onMap[0][3 * i] = s.p.x;
+                onMap[1][3 * i] = s.p.y;
+                onMap[0][3 * i + 1] = s.q.x;
+                onMap[1][3 * i + 1] = s.q.y;
+                onMap[0][3 * i + 2] = (s.p.x + s.q.x) / 2;
+                onMap[1][3 * i + 2] = (s.p.y + s.q.y) / 2;
+            }
+            assertArrayEquals(answers(fresh, points), answers(map, points), scene + " at random points");
+            assertArrayEquals(answers(fresh, onMap), answers(map, onMap), scene + " at endpoints and midpoints");
+        }
+    }
+
+    @Test
+    public void deletingEverySegmentLeavesTheBoundingBox(){
+        for(DCELGenerator.Scene scene: DCELGenerator.Scene.values()){
+            TrapezoidMap map = TrapMapBuilder.buildTrapMap(Scenes.read(scene, 600, 19), 19);
+            List<Segment> inner = new ArrayList<>(map.segments.subList(4, map.segments.size()));
+            Collections.shuffle(inner, new Random(19));
+            for(Segment s: inner) map.delete(s);
+            assertEquals(1, map.traps.size(), scene.toString());
+            QueryResponse response = new QueryResponse();
+            for(Segment s: inner){
+                map.locate((s.p.x + s.q.x) / 2, (s.p.y + s.q.y) / 2, response);
+                assertEquals(ResponseType.TRAPEZOID, response.type, scene.toString());
+            }
+        }
+    }
+
+    @Test
+    public void labelsTheFaceContainingAPoint(){
+        for(DCELGenerator.Scene scene: DCELGenerator.Scene.values()){
+            DCEL dcel = Scenes.read(scene, 1000, 11);
+            TrapezoidMap map = TrapMapBuilder.buildTrapMap(dcel, 11);
+            Face unbounded = null;
+            for(Face f: dcel.faces) if(f.outerComponent == null) unbounded = f;
+            assertNotNull(unbounded, scene.toString());
+
+            float[][] points = randomPoints(map, 2000, 11);
+            QueryResponse response = new QueryResponse();
+            for(int i = 0; i < points[0].length; i++){
+                float x = points[0][i], y = points[1][i];
+                map.locate(x, y, response);
+                if(response.type != ResponseType.TRAPEZOID) continue;
+
+                // The innermost face whose outer boundary holds the point, its holes are smaller faces
+                Face expected = unbounded;
+                double smallest = Double.MAX_VALUE;
+                for(Face f: dcel.faces){
+                    if(f.outerComponent == null || !inside(f.outerComponent, x, y)) continue;
+                    double area = area(f.outerComponent);
+                    if(area < smallest){
+                        smallest = area;
+                        expected = f;
+                    }
+                }
+                assertSame(expected, response.face, scene + " at " + x + ", " + y + " expected " + expected.name + " but was " + (response.face == null ? null : response.face.name));
+            }
+        }
+    }
+
+    @Test
+    public void listsTheLiveTrapezoidsOfEachFacePerMap(){
+        DCEL dcel = Scenes.read(DCELGenerator.Scene.HOLES, 1000, 13);
+        TrapezoidMap first = TrapMapBuilder.buildTrapMap(dcel, 13);
+        TrapezoidMap second = TrapMapBuilder.buildTrapMap(dcel, 14);
+        assertFacesHoldTheLiveTrapezoids(dcel, first);
+        assertFacesHoldTheLiveTrapezoids(dcel, second);
+
+        List<Segment> inner = new ArrayList<>(second.segments.subList(4, second.segments.size()));
+        for(Segment s: inner.subList(0, 100)) second.delete(s);
+        assertFacesHoldTheLiveTrapezoids(dcel, second);
+        for(Segment s: inner.subList(0, 100)) second.insert(s);
+        assertFacesHoldTheLiveTrapezoids(dcel, second);
+        for(Segment s: inner.subList(0, inner.size() * 3 / 5)) second.delete(s); //Through a rebuild
+        assertFacesHoldTheLiveTrapezoids(dcel, second);
+        assertFacesHoldTheLiveTrapezoids(dcel, first);
+    }
+
+    @Test
+    public void numbersTheTrapezoidsOfAMapApart(){
+        TrapezoidMap map = TrapMapBuilder.buildTrapMap(Scenes.read(DCELGenerator.Scene.GRID, 1000, 17), 17);
+        assertNumberedApart(map);
+        List<Segment> inner = new ArrayList<>(map.segments.subList(4, map.segments.size()));
+        for(Segment s: inner.subList(0, 50)) map.delete(s);
+        for(Segment s: inner.subList(0, 50)) map.insert(s);
+        assertNumberedApart(map);
+    }
+
+    private static void assertNumberedApart(TrapezoidMap map){
+        Set<Integer> numbers = new HashSet<>();
+        for(Trapezoid t: map.traps){
+            assertTrue(numbers.add(t.no), t.name());
+            assertEquals("t" + t.no, t.name());
+        }
+        int next = map.nextTrapezoidNo();
+        for(int no: numbers) assertTrue(no >= 0 && no < next);
+    }
+
+    static void assertFacesHoldTheLiveTrapezoids(DCEL dcel, TrapezoidMap map){
+        int listed = 0;
+        for(Face f: dcel.faces) listed += map.trapezoids(f).size();
+        assertEquals(map.traps.size(), listed);
+        for(Trapezoid t: map.traps) assertTrue(map.trapezoids(t.containingFace).contains(t));
+    }
+
+    @Test
+    public void answersStayValidWhileSegmentsAreDeletedAndInserted() throws InterruptedException {
+        TrapezoidMap map = TrapMapBuilder.buildTrapMap(Scenes.read(DCELGenerator.Scene.GRID, 2000, 5), 1);
+        float[][] points = randomPoints(map, 4096, 5);
+        String[] before = answers(map, points);
+        List<Segment> inner = new ArrayList<>(map.segments.subList(4, map.segments.size()));
+
+        AtomicBoolean updating = new AtomicBoolean(true);
+        Queue<String> failures = new ConcurrentLinkedQueue<>();
+        Thread descents = new Thread(() -> {
+            QueryResponse response = new QueryResponse();
+            do{
+                for(int i = 0; i < points[0].length; i++){
+                    map.locate(points[0][i], points[1][i], response);
+                    check(response, points[0][i], points[1][i], "locate", failures);
+                }
+            }while(updating.get());
+        });
+        Thread batches = new Thread(() -> {
+            QueryResponse[] responses = new QueryResponse[points[0].length];
+            for(int i = 0; i < responses.length; i++) responses[i] = new QueryResponse();
+            do{
+                map.querySorted(points[0], points[1], responses);
+                for(int i = 0; i < responses.length; i++) check(responses[i], points[0][i], points[1][i], "querySorted", failures);
+            }while(updating.get());
+        });
+        descents.setUncaughtExceptionHandler((t, e) -> failures.add(t.getName() + " threw " + e));
+        batches.setUncaughtExceptionHandler((t, e) -> failures.add(t.getName() + " threw " + e));
+        descents.start();
+        batches.start();
+        try{
+            // Single deletions answered by the search structure, then enough of them to force a rebuild
+            for(int i = 0; i < 200; i++){
+                Segment s = inner.get(i);
+                map.delete(s);
+                map.insert(s);
+            }
+            int half = inner.size() * 3 / 5;
+            for(int i = 0; i < half; i++) map.delete(inner.get(i));
+            for(int i = 0; i < half; i++) map.insert(inner.get(i));
+        }
+        finally{
+            updating.set(false);
+            descents.join();
+            batches.join();
+        }
+
+        assertTrue(failures.isEmpty(), failures.size() + " failures, first " + failures.peek());
+        assertArrayEquals(before, answers(map, points));
+    }
+
+    //The bounded faces of the sample have no holes and don't nest, so a point is in the face whose
+    //boundary surrounds it, or in the unbounded face f1 if there is none
+    @Test
+    public void labelsEachPointWithTheFaceAroundIt(){
+        DCEL dcel = Scenes.sample();
+        TrapezoidMap map = TrapMapBuilder.buildTrapMap(dcel, 12);
+        float[] xy = Scenes.points(dcel, 5000, 12);
+        QueryResponse response = new QueryResponse();
+        for(int i = 0; i < xy.length; i += 2){
+            if(!map.locate(xy[i], xy[i + 1], response) || response.type != ResponseType.TRAPEZOID) continue;
+            Face expected = dcel.faces.get(0);
+            for(Face f: dcel.faces){
+                if(f.outerComponent != null && inside(f.outerComponent, xy[i], xy[i + 1])) expected = f;
+            }
+            assertSame(expected, response.face, xy[i] + ", " + xy[i + 1]);
+        }
+
+        assertFacesHoldTheLiveTrapezoids(dcel, map);
+    }
+
+    //Neighbors share a vertical extension and list each other. Two neighbors on a side are split by
+    //segments ending at the shared endpoint, the lower one continues the bottom, the upper one the top
+    @Test
+    public void neighborSlotsAreMutualAndOrdered(){
+        DCEL dcel = Scenes.sample();
+        TrapezoidMap map = TrapMapBuilder.buildTrapMap(dcel, 23);
+        assertNeighbors(map);
+        assertNeighbors(TrapMapBuilder.buildTrapMap(Scenes.read(DCELGenerator.Scene.GRID, 2000, 23), 23));
+
+        List<Segment> rest = new ArrayList<>(map.segments.subList(4, map.segments.size()));
+        Collections.shuffle(rest, new Random(23));
+        delete(map, rest, 5);
+        assertNeighbors(map);
+    }
+
+    private static void assertNeighbors(TrapezoidMap map){
+        for(Trapezoid t: map.traps){
+            assertTrue(t.upperLeft == null || t.lowerLeft != null);
+            assertTrue(t.upperRight == null || t.lowerRight != null);
+            for(Trapezoid n: new Trapezoid[]{t.lowerLeft, t.upperLeft}){
+                if(n == null) continue;
+                assertEquals(t.leftp.x, n.rightp.x);
+                assertTrue(n.lowerRight == t || n.upperRight == t);
+            }
+            for(Trapezoid n: new Trapezoid[]{t.lowerRight, t.upperRight}){
+                if(n == null) continue;
+                assertEquals(t.rightp.x, n.leftp.x);
+                assertTrue(n.lowerLeft == t || n.upperLeft == t);
+            }
+            if(t.upperLeft != null){
+                assertSame(t.bottom, t.lowerLeft.bottom);
+                assertSame(t.top, t.upperLeft.top);
+                assertSame(t.leftp, t.lowerLeft.top.q);
+                assertSame(t.leftp, t.upperLeft.bottom.q);
+            }
+            if(t.upperRight != null){
+                assertSame(t.bottom, t.lowerRight.bottom);
+                assertSame(t.top, t.upperRight.top);
+                assertSame(t.rightp, t.lowerRight.top.p);
+                assertSame(t.rightp, t.upperRight.bottom.p);
+            }
+        }
+    }
+
+    //Even-odd test of (x, y) against the cycle of half-edges starting at e
+    private static boolean inside(HalfEdge e, float x, float y){
+        boolean inside = false;
+        HalfEdge cur = e;
+        do{
+            Vertex a = cur.origin, b = cur.next.origin;
+            if((a.y > y) != (b.y > y) && x < ((double) b.x - a.x) * ((double) y - a.y) / ((double) b.y - a.y) + a.x) inside = !inside;
+            cur = cur.next;
+        }while(cur != e);
+        return inside;
+    }
+
+    private static double area(HalfEdge e){
+        double twice = 0;
+        HalfEdge cur = e;
+        do{
+            Vertex a = cur.origin, b = cur.next.origin;
+            twice += (double) a.x * b.y - (double) b.x * a.y;
+            cur = cur.next;
+        }while(cur != e);
+        return Math.abs(twice) / 2;
+    }
+
+    private static List<String> answers(TrapezoidMap map, float[] xy){
+        List<String> answers = new ArrayList<>();
+        QueryResponse response = new QueryResponse();
+        for(int i = 0; i < xy.length; i += 2){
+            if(!map.locate(xy[i], xy[i + 1], response)){
+                answers.add("outside");
+                continue;
+            }
+            switch(response.type){
+                case VERTEX: answers.add("vertex " + response.v.queryString()); break;
+                case SEGMENT: answers.add("segment " + response.s.queryString()); break;
+                default: answers.add("trapezoid " + response.t.queryString().replace('\n', ' '));
+            }
+        }
+        return answers;
+    }
+
+    //x, y pairs split into a row of xs and a row of ys
+    private static float[][] rows(float[] xy){
+        float[][] rows = new float[2][xy.length / 2];
+        for(int i = 0; i < rows[0].length; i++){
+            rows[0][i] = xy[2 * i];
+            rows[1][i] = xy[2 * i + 1];
+        }
+        return rows;
+    }
+
+    //Interleaved x and y rows of points uniform over the bounding box of the map's segments
+    private static float[][] randomPoints(TrapezoidMap map, int n, long seed){
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for(Segment s: map.segments){
+            minX = Math.min(minX, Math.min(s.p.x, s.q.x));
+            maxX = Math.max(maxX, Math.max(s.p.x, s.q.x));
+            minY = Math.min(minY, Math.min(s.p.y, s.q.y));
+            maxY = Math.max(maxY, Math.max(s.p.y, s.q.y));
+        }
+        Random random = new Random(seed);
+        float[][] points = new float[2][n];
+        for(int i = 0; i < n; i++){
+            points[0][i] = minX + (maxX - minX) * (0.001f + 0.998f * random.nextFloat());
+            points[1][i] = minY + (maxY - minY) * (0.001f + 0.998f * random.nextFloat());
+        }
+        return points;
+    }
+
+    private static String[] answers(TrapezoidMap map, float[][] points){
+        String[] answers = new String[points[0].length];
+        QueryResponse response = new QueryResponse();
+        for(int i = 0; i < answers.length; i++){
+            map.locate(points[0][i], points[1][i], response);
+            answers[i] = response.queryString() + (response.face == null ? "" : "\n" + response.face.name);
+        }
+        return answers;
+    }
+
+    //Whether the answer holds for (x, y) up to a small tolerance, which a point found by either side of
+    //an update meets but a trapezoid, segment or vertex read from a half made update does not
+    private static void check(QueryResponse response, float x, float y, String query, Queue<String> failures){
+        double tolerance = 0.001;
+        boolean valid;
+        switch(response.type){
+            case VERTEX:
+                valid = Math.abs(response.v.x - x) < tolerance && Math.abs(response.v.y - y) < tolerance;
+                break;
+            case SEGMENT:
+                valid = distance(response.s, x, y) < tolerance;
+                break;
+            default:
+                Trapezoid t = response.t;
+                valid = x > t.leftp.x - tolerance && x < t.rightp.x + tolerance
+                        && y < height(t.top, x) + tolerance && y > height(t.bottom, x) - tolerance;
+        }
+        if(!valid) failures.add(query + " answered " + response.queryString().replace('\n', ' ') + " at " + x + ", " + y);
+    }
+
+    private static double height(Segment s, float x){
+        if(s.p.x == s.q.x) return s.p.y;
+        double f = Math.max(0, Math.min(1, ((double) x - s.p.x) / ((double) s.q.x - s.p.x)));
+        return s.p.y + f * ((double) s.q.y - s.p.y);
+    }
+
+    private static double distance(Segment s, float x, float y){
+        double dx = (double) s.q.x - s.p.x, dy = (double) s.q.y - s.p.y;
+        double f = Math.max(0, Math.min(1, (((double) x - s.p.x) * dx + ((double) y - s.p.y) * dy) / (dx * dx + dy * dy)));
+        return Math.hypot(s.p.x + f * dx - x, s.p.y + f * dy - y);
+    }
+}
@@ -0,0 +1,69 @@
+package main.structures.search;
+
+import main.Query;
+import main.Scenes;
+import main.input.DCELGenerator;
+import main.input.TrapMapBuilder;
+import main.structures.DCEL.DCEL;
+import main.structures.TrapezoidMap;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+//The flat copy has to answer exactly what the DAG it was compiled from answers
+public class FlatSearchStructureTest {
+
+    @Test
+    public void answersAsTheDagOnTheSample(){
+        DCEL dcel = Scenes.sample();
+        for(long seed = 0; seed < 10; seed++){
+            TrapezoidMap map = TrapMapBuilder.buildTrapMap(dcel, seed);
+            float[] xy = Scenes.points(dcel, 2000, seed);
+            QueryResponse[] dag = new QueryResponse[xy.length / 2];
+            for(int i = 0; i < dag.length; i++) dag[i] = map.query(new Query(xy[2 * i], xy[2 * i + 1]));
+
+            map.freeze();
+            for(int i = 0; i < dag.length; i++){
+                String point = "seed " + seed + " " + xy[2 * i] + ", " + xy[2 * i + 1];
+                QueryResponse flat = map.query(new Query(xy[2 * i], xy[2 * i + 1]));
+                if(dag[i] == null){
+                    assertNull(flat, point);
+                    continue;
+                }
+                assertEquals(dag[i].type, flat.type, point);
+                assertSame(dag[i].t, flat.t, point);
+                assertSame(dag[i].s, flat.s, point);
+                assertSame(dag[i].v, flat.v, point);
+            }
+        }
+    }
+
+    @Test
+    public void answersAsTheDagAtVerticesAndOnVerticalEdges(){
+        for(DCELGenerator.Scene scene: DCELGenerator.Scene.values()){
+            TrapezoidMap map = TrapMapBuilder.buildTrapMap(Scenes.read(scene, 2000, 7), 3);
+            float[] xy = QueryPoints.of(map, 20000, 3);
+            QueryResponse[] dag = new QueryResponse[xy.length / 2];
+            for(int i = 0; i < dag.length; i++){
+                dag[i] = new QueryResponse();
+                map.locate(xy[2 * i], xy[2 * i + 1], dag[i]);
+            }
+
+            map.freeze();
+            QueryResponse flat = new QueryResponse();
+            for(boolean measured: new boolean[]{false, true}){
+                map.metrics.setEnabled(measured);
+                for(int i = 0; i < dag.length; i++){
+                    String point = scene + (measured ? " measured " : " ") + xy[2 * i] + ", " + xy[2 * i + 1];
+                    map.locate(xy[2 * i], xy[2 * i + 1], flat);
+                    assertEquals(dag[i].type, flat.type, point);
+                    assertSame(dag[i].t, flat.t, point);
+                    assertSame(dag[i].s, flat.s, point);
+                    assertSame(dag[i].v, flat.v, point);
+                }
+            }
+        }
+    }
+}
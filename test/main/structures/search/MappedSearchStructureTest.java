@@ -0,0 +1,59 @@
+package main.structures.search;
+
+import main.Scenes;
+import main.input.DCELGenerator;
+import main.input.TrapMapBuilder;
+import main.structures.DCEL.DCEL;
+import main.structures.TrapezoidMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//A snapshot has to answer what the map it was written from answers: the same kind of answer with
+//the same number, text and face
+public class MappedSearchStructureTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void answersAsTheMapOnTheSample() throws IOException {
+        DCEL dcel = Scenes.sample();
+        TrapezoidMap map = TrapMapBuilder.buildTrapMap(dcel, 14);
+        Path file = dir.resolve("sample.tmap");
+        map.writeSnapshot(file);
+        assertAnswersAsTheMap(map, MappedSearchStructure.open(file), Scenes.points(dcel, 5000, 14), "sample");
+    }
+
+    @Test
+    public void answersAsTheDagAtVerticesAndOnVerticalEdges() throws IOException {
+        for(DCELGenerator.Scene scene: DCELGenerator.Scene.values()){
+            TrapezoidMap map = TrapMapBuilder.buildTrapMap(Scenes.read(scene, 2000, 7), 5);
+            Path file = dir.resolve(scene + ".tmap");
+            map.writeSnapshot(file);
+            assertAnswersAsTheMap(map, MappedSearchStructure.open(file), QueryPoints.of(map, 20000, 5), scene.toString());
+        }
+    }
+
+    private static void assertAnswersAsTheMap(TrapezoidMap map, MappedSearchStructure mapped, float[] xy, String label){
+        QueryResponse expected = new QueryResponse();
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < xy.length; i += 2){
+            String point = label + " " + xy[i] + ", " + xy[i + 1];
+            boolean inside = map.locate(xy[i], xy[i + 1], expected);
+            int answer = mapped.locate(xy[i], xy[i + 1]);
+            assertEquals(inside, answer >= 0, point);
+            if(!inside) continue;
+            assertEquals(expected.type, MappedSearchStructure.type(answer), point);
+            assertEquals(expected.id(), mapped.id(answer), point);
+            text.setLength(0);
+            mapped.appendQueryString(answer, text);
+            assertEquals(expected.queryString(), text.toString(), point);
+            assertEquals(expected.face == null ? null : expected.face.name, mapped.faceName(answer), point);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package main.structures.search;
+
+import main.structures.Segment;
+import main.structures.TrapezoidMap;
+
+import java.util.Random;
+
+//Query points where structures compiled from the DAG have to decide exactly as the DAG does: every
+//endpoint and points straight above and below it, points on and beside vertical segments, and
+//uniformly random points in the bounding box. Stored as x, y pairs
+class QueryPoints {
+
+    private static final float[] OFFSETS = {-1e-3f, -2e-5f, 2e-5f, 1e-3f};
+
+    private float[] xy = new float[1024];
+    private int size;
+
+    private QueryPoints(){
+    }
+
+    static float[] of(TrapezoidMap map, int random, long seed){
+        QueryPoints points = new QueryPoints();
+        float left = Float.MAX_VALUE, right = -Float.MAX_VALUE, bottom = Float.MAX_VALUE, top = -Float.MAX_VALUE;
+        for(Segment s: map.segments){
+            left = Math.min(left, s.p.x);
+            right = Math.max(right, s.q.x);
+            bottom = Math.min(bottom, Math.min(s.p.y, s.q.y));
+            top = Math.max(top, Math.max(s.p.y, s.q.y));
+            if(s.no < 0) continue;
+            points.add(s.p.x, s.p.y);
+            points.add(s.q.x, s.q.y);
+            for(float d: OFFSETS){
+                points.add(s.p.x, s.p.y + d);
+                points.add(s.q.x, s.q.y + d);
+            }
+            if(!s.vertical) continue;
+            for(int k = 1; k < 4; k++){
+                float y = s.p.y + (s.q.y - s.p.y) * k / 4;
+                points.add(s.p.x, y);
+                for(float d: OFFSETS) points.add(s.p.x + d, y);
+            }
+        }
+        Random r = new Random(seed);
+        for(int i = 0; i < random; i++){
+            points.add(left + r.nextFloat() * (right - left), bottom + r.nextFloat() * (top - bottom));
+        }
+        float[] xy = new float[points.size];
+        System.arraycopy(points.xy, 0, xy, 0, xy.length);
+        return xy;
+    }
+
+    private void add(float x, float y){
+        if(size == xy.length){
+            float[] grown = new float[size * 2];
+            System.arraycopy(xy, 0, grown, 0, size);
+            xy = grown;
+        }
+        xy[size++] = x;
+        xy[size++] = y;
+    }
+}
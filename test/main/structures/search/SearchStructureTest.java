@@ -0,0 +1,195 @@
+package main.structures.search;
+
+import main.Query;
+import main.Scenes;
+import main.input.DCELGenerator;
+import main.input.TrapMapBuilder;
+import main.structures.DCEL.DCEL;
+import main.structures.DCEL.Vertex;
+import main.structures.Segment;
+import main.structures.Trapezoid;
+import main.structures.TrapezoidMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SearchStructureTest {
+
+    //One response is reused for every point, and a point outside the bounding box leaves it as it was
+    @Test
+    public void locateAnswersAsQueryIntoOneResponse(){
+        DCEL dcel = Scenes.sample();
+        TrapezoidMap map = TrapMapBuilder.buildTrapMap(dcel, 1);
+        float[] xy = Scenes.points(dcel, 2000, 1);
+        QueryResponse response = new QueryResponse();
+        for(boolean frozen: new boolean[]{false, true}){
+            if(frozen) map.freeze();
+            int outside = 0;
+            for(int i = 0; i < xy.length; i += 2){
+                String point = (frozen ? "frozen " : "") + xy[i] + ", " + xy[i + 1];
+                QueryResponse expected = map.query(new Query(xy[i], xy[i + 1]));
+                if(expected == null){
+                    ResponseType type = response.type;
+                    Object answer = answer(response);
+                    assertFalse(map.locate(xy[i], xy[i + 1], response), point);
+                    assertSame(type, response.type, point);
+                    assertSame(answer, answer(response), point);
+                    outside++;
+                    continue;
+                }
+                assertTrue(map.locate(xy[i], xy[i + 1], response), point);
+                assertEquals(expected.type, response.type, point);
+                assertSame(answer(expected), answer(response), point);
+            }
+            assertTrue(outside > 0);
+        }
+    }
+
+    @Test
+    public void aLeafBecomesTheSubtreeReplacingIt(){
+        Vertex p = new Vertex(0, 0, 0);
+        Vertex q = new Vertex(1, 1, 1);
+        Segment s = new Segment(p, q, 0);
+        Node leaf = Node.leaf(new Trapezoid(p, q, null, null, 0));
+        Node above = Node.leaf(new Trapezoid(p, q, null, s, 1));
+        Node below = Node.leaf(new Trapezoid(p, q, s, null, 2));
+        Node subRoot = Node.yNode(s);
+        subRoot.lChild = above;
+        subRoot.rChild = below;
+
+        leaf.become(subRoot);
+        assertSame(s, leaf.key);
+        assertSame(above, leaf.lChild);
+        assertSame(below, leaf.rChild);
+        assertThrows(IllegalArgumentException.class, () -> leaf.become(Node.xNode(p)));
+        assertThrows(IllegalArgumentException.class, () -> above.become(below));
+    }
+
+    //Every live trapezoid is still the key of its own leaf after inserts and deletes turned old leaves into subtrees
+    @Test
+    public void everyLiveTrapezoidKeepsItsLeaf(){
+        DCEL dcel = Scenes.sample();
+        TrapezoidMap map = TrapMapBuilder.buildTrapMap(dcel, 24);
+        for(Trapezoid t: map.traps) assertSame(t, t.node.key);
+        List<Segment> segments = new ArrayList<>(map.segments.subList(4, map.segments.size()));
+        for(Segment s: segments.subList(0, 6)) map.delete(s);
+        for(Trapezoid t: map.traps) assertSame(t, t.node.key);
+        float[] xy = Scenes.points(dcel, 1000, 24);
+        QueryResponse response = new QueryResponse();
+        for(int i = 0; i < xy.length; i += 2){
+            if(map.locate(xy[i], xy[i + 1], response) && response.type == ResponseType.TRAPEZOID) assertTrue(map.traps.contains(response.t));
+        }
+    }
+
+    //Columns of grid vertices share x coordinates
+    @Test
+    public void locatesEveryVertexOfAGrid(){
+        for(DCELGenerator.Scene scene: new DCELGenerator.Scene[]{DCELGenerator.Scene.GRID, DCELGenerator.Scene.VERTICAL}){
+            for(long seed = 1; seed <= 3; seed++){
+                DCEL dcel = Scenes.read(scene, 2000, 7);
+                TrapezoidMap map = TrapMapBuilder.buildTrapMap(dcel, seed);
+                QueryResponse response = new QueryResponse();
+                for(Vertex v: dcel.vertices){
+                    assertTrue(map.locate(v.x, v.y, response));
+                    assertEquals(ResponseType.VERTEX, response.type, scene + " seed " + seed + " " + v.queryString());
+                    assertSame(v, response.v);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void locatesTheMidpointOfEveryVerticalEdge(){
+        for(DCELGenerator.Scene scene: new DCELGenerator.Scene[]{DCELGenerator.Scene.GRID, DCELGenerator.Scene.VERTICAL}){
+            for(long seed = 1; seed <= 3; seed++){
+                TrapezoidMap map = TrapMapBuilder.buildTrapMap(Scenes.read(scene, 2000, 7), seed);
+                QueryResponse response = new QueryResponse();
+                int vertical = 0;
+                for(Segment s: map.segments){
+                    if(!s.vertical || s.no < 0) continue;
+                    vertical++;
+                    assertTrue(map.locate(s.p.x, (s.p.y + s.q.y) / 2, response));
+                    assertEquals(ResponseType.SEGMENT, response.type, scene + " seed " + seed + " " + s.queryString());
+                    assertSame(s, response.s);
+                }
+                assertTrue(vertical > 0);
+            }
+        }
+    }
+
+    @Test
+    public void locatesPointsOnAndBesideVerticalEdges(){
+        for(DCELGenerator.Scene scene: new DCELGenerator.Scene[]{DCELGenerator.Scene.GRID, DCELGenerator.Scene.VERTICAL, DCELGenerator.Scene.SLIVERS}){
+            TrapezoidMap map = TrapMapBuilder.buildTrapMap(Scenes.read(scene, 2000, 7), 1);
+            QueryResponse response = new QueryResponse();
+            for(Segment s: map.segments){
+                if(!s.vertical || s.no < 0) continue;
+                for(int k = 1; k < 10; k++){
+                    float y = s.p.y + (s.q.y - s.p.y) * k / 10;
+                    if(y <= s.p.y || y >= s.q.y) continue;
+                    map.locate(s.p.x, y, response);
+                    assertSame(s, response.s, scene + " on " + s.queryString() + " at " + y);
+                    for(float dx: new float[]{-1e-3f, -2e-5f, 2e-5f, 1e-3f}){
+                        float x = s.p.x + dx;
+                        map.locate(x, y, response);
+                        assertEquals(ResponseType.TRAPEZOID, response.type, scene + " beside " + s.queryString() + " at " + x + ", " + y);
+                        assertTrue(contains(response.t, x, y), scene + " beside " + s.queryString() + " at " + x + ", " + y);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void locatesPointsDirectlyAboveAndBelowVertices(){
+        for(DCELGenerator.Scene scene: new DCELGenerator.Scene[]{DCELGenerator.Scene.GRID, DCELGenerator.Scene.VERTICAL}){
+            DCEL dcel = Scenes.read(scene, 2000, 7);
+            TrapezoidMap map = TrapMapBuilder.buildTrapMap(dcel, 1);
+            QueryResponse response = new QueryResponse();
+            for(Vertex v: dcel.vertices){
+                for(float dy: new float[]{-1e-3f, 1e-3f}){
+                    float y = v.y + dy;
+                    map.locate(v.x, y, response);
+                    String point = scene + " " + v.x + ", " + y;
+                    switch(response.type){
+                        case VERTEX: throw new AssertionError(point + " answered " + response.v.queryString());
+                        case SEGMENT:
+                            assertTrue(response.s.vertical && response.s.p.x == v.x && y > response.s.p.y && y < response.s.q.y, point);
+                            break;
+                        default:
+                            assertTrue(contains(response.t, v.x, y), point);
+                    }
+                }
+            }
+        }
+    }
+
+    private static Object answer(QueryResponse response){
+        if(response.type == null) return null;
+        switch(response.type){
+            case VERTEX: return response.v;
+            case SEGMENT: return response.s;
+            default: return response.t;
+        }
+    }
+
+    //Whether (x, y) is strictly inside t: lexicographically between leftp and rightp, below top and above bottom
+    private static boolean contains(Trapezoid t, float x, float y){
+        boolean afterLeft = x > t.leftp.x || (x == t.leftp.x && y > t.leftp.y);
+        boolean beforeRight = x < t.rightp.x || (x == t.rightp.x && y < t.rightp.y);
+        return afterLeft && beforeRight && side(t.top, x, y) < 0 && side(t.bottom, x, y) > 0;
+    }
+
+    //Sign of the orientation of (x, y) against s, the symbolic shear making a vertical segment's right side below it
+    private static int side(Segment s, float x, float y){
+        if(s.vertical) return Float.compare(s.p.x, x);
+        return (int) Math.signum(s.dx * ((double) y - s.p.y) - s.dy * ((double) x - s.p.x));
+    }
+}